@@ -0,0 +1,123 @@
+package searchengine.config;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import searchengine.services.indexing.utils.UrlNormalizer;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Миграция путей страниц, сохраненных до появления {@link UrlNormalizer}.
+ * <p>
+ * Прежний getFormattedLink добавлял "/" в конец любой ссылки, в том числе после расширения файла,
+ * и не кодировал русские буквы. Обход и обновление сайта ищут страницы по канонической ссылке, поэтому
+ * без миграции каждая такая страница при обновлении сохранилась бы второй раз. Путь приводится к
+ * каноническому виду, а если страница с каноническим путем уже есть, устаревшая копия удаляется вместе
+ * с ее вкладом во frequency лемм.</p>
+ */
+public class CanonicalPagePathsChange implements CustomTaskChange {
+
+    static final String SELECT_PAGES_SQL = "SELECT p.id, p.site_id, p.generation, p.path, s.url " +
+            "FROM page p JOIN site s ON s.id = p.site_id ORDER BY p.id";
+    static final String UPDATE_PATH_SQL = "UPDATE page SET path = ? WHERE id = ?";
+    static final String DECREMENT_FREQUENCY_SQL = "UPDATE lemma l JOIN `index` i ON i.lemma_id = l.id " +
+            "SET l.frequency = l.frequency - 1 WHERE i.page_id = ?";
+    static final String CLEAR_DUPLICATE_OF_SQL = "UPDATE page SET duplicate_of = NULL, content_hash = NULL " +
+            "WHERE duplicate_of = ?";  // как PageRepository.clearDuplicateOf
+    static final String DELETE_PAGE_SQL = "DELETE FROM page WHERE id = ?";
+
+    private int updated;
+    private int removed;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        JdbcConnection connection = (JdbcConnection) database.getConnection();
+        try {
+            List<StoredPage> pages = new ArrayList<>();
+            try (PreparedStatement select = connection.prepareStatement(SELECT_PAGES_SQL);
+                 ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    pages.add(new StoredPage(resultSet.getInt(1), resultSet.getInt(2), resultSet.getInt(3),
+                            resultSet.getString(4), resultSet.getString(5)));
+                }
+            }
+            Map<String, UrlNormalizer> normalizers = new HashMap<>();
+            Set<String> storedPaths = new HashSet<>();  // сайт, поколение и путь
+            pages.forEach(page -> storedPaths.add(page.key(page.path())));
+            for (StoredPage page : pages) {
+                UrlNormalizer urlNormalizer = normalizers.computeIfAbsent(page.siteUrl(), UrlNormalizer::new);
+                String canonicalPath = toCanonicalPath(urlNormalizer, page.siteUrl(), page.path());
+                if (canonicalPath == null || canonicalPath.equals(page.path())) continue;
+                if (storedPaths.add(page.key(canonicalPath))) {
+                    executeUpdate(connection, UPDATE_PATH_SQL, canonicalPath, page.id());
+                    updated++;
+                } else {
+                    executeUpdate(connection, DECREMENT_FREQUENCY_SQL, page.id());
+                    executeUpdate(connection, CLEAR_DUPLICATE_OF_SQL, page.id());
+                    executeUpdate(connection, DELETE_PAGE_SQL, page.id());  // индексы удаляются каскадно
+                    removed++;
+                }
+            }
+        } catch (DatabaseException | SQLException e) {
+            throw new CustomChangeException("Не удалось привести пути страниц к каноническому виду", e);
+        }
+    }
+
+    /**
+     * Канонический путь страницы, сохраненной прежней версией. Путь отсчитывается от адреса сайта так же,
+     * как в PageIndexator
+     * @return путь относительно адреса сайта или null, если ссылку нельзя разобрать
+     */
+    static String toCanonicalPath(UrlNormalizer urlNormalizer, String siteUrl, String legacyPath) {
+        String path = legacyPath.length() > 1 && legacyPath.endsWith("/") ?  // "/" прежняя версия добавляла всегда
+                legacyPath.substring(0, legacyPath.length() - 1) : legacyPath;
+        UrlNormalizer.CanonicalLink canonicalLink = urlNormalizer.normalize(siteUrl.concat(path), null);
+        return canonicalLink == null ? null : canonicalLink.link().substring(siteUrl.length());
+    }
+
+    private static void executeUpdate(JdbcConnection connection, String sql, Object... args)
+            throws DatabaseException, SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++) statement.setObject(i + 1, args[i]);
+            statement.executeUpdate();
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Пути страниц приведены к каноническому виду: изменено " + updated + ", удалено копий " + removed;
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return new ValidationErrors();
+    }
+
+    private record StoredPage(int id, int siteId, int generation, String path, String siteUrl) {
+
+        String key(String pagePath) {
+            return siteId + ":" + generation + ":" + pagePath;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import searchengine.services.indexing.utils.VirtualThreadCrawlExecutor;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "crawler-settings")
+public class ConfigCrawler {
+
+    private long requestDelay = 1_000;  // (мс) минимальная пауза между запросами к одному хосту
+
+    private int maxInFlightPerHost = 1;  // максимум одновременных запросов к одному хосту
+
+    private long connectTimeout = 10_000;  // (мс) таймаут установки соединения
+
+    private long responseTimeout = 30_000;  // (мс) таймаут получения ответа
+
+    private int dnsCacheTtl = 300;  // (с) время хранения разрешенных адресов хостов, на весь процесс JVM
+
+    private CrawlExecutorMode executorMode = CrawlExecutorMode.FORK_JOIN;  // режим выполнения задач обхода
+
+    private int maxConcurrentPagesPerSite = 64;  // максимум одновременно обрабатываемых страниц сайта
+        // (для режима VIRTUAL_THREADS)
+
+    private boolean respectRobotsTxt = true;  // соблюдать правила Disallow/Allow и Crawl-delay из robots.txt
+
+    private long robotsTxtCacheTtl = 86_400;  // (с) время хранения загруженного robots.txt хоста
+
+    private boolean sitemapSeeding = true;  // заполнять очередь обхода ссылками из sitemap.xml
+
+    private int sitemapMaxUrls = 50_000;  // максимум ссылок, добавляемых из sitemap.xml одного сайта
+
+    private long checkpointInterval = 30_000;  // (мс) период сохранения очереди обхода для продолжения
+
+    private long statusHeartbeatInterval = 5_000;  // (мс) период записи status_time индексируемых сайтов
+
+    private long bulkWriteStatsInterval = 60_000;  // (мс) период вывода в лог скорости пакетной записи
+
+    private long lemmaFlushInterval = 2_000;  // (мс) период записи накопленных изменений frequency лемм
+
+    private long generationCleanupInterval = 60_000;  // (мс) период удаления устаревших поколений индекса
+
+    private int generationDeleteBatchSize = 200;  // страниц или лемм устаревшего поколения в одном DELETE
+
+    private int nearDuplicateDistance = 3;  // (бит) порог отличия SimHash почти одинаковых страниц
+        // (не больше 3, -1 - отключить поиск дубликатов)
+
+    private PipelineSettings pipeline = new PipelineSettings();  // этапы обработки загруженных страниц
+
+    private RetrySettings retry = new RetrySettings();  // повторные запросы и приостановка недоступных хостов
+
+    /* Недоступный в JVM режим останавливает запуск приложения, а не первую индексацию */
+    public void setExecutorMode(CrawlExecutorMode executorMode) {
+        if (executorMode == CrawlExecutorMode.VIRTUAL_THREADS) VirtualThreadCrawlExecutor.checkSupported();
+        this.executorMode = executorMode;
+    }
+
+    @Setter
+    @Getter
+    public static class PipelineSettings {
+
+        private int parseWorkers = 2;  // потоки разбора HTML и поиска ссылок
+
+        private int lemmatizeWorkers = Runtime.getRuntime().availableProcessors();  // потоки лемматизации
+
+        private int persistWorkers = 2;  // потоки записи страниц, лемм и индексов в БД
+
+        private int queueCapacity = 32;  // размер очереди перед каждым этапом
+
+    }
+
+    @Setter
+    @Getter
+    public static class RetrySettings {
+
+        private int maxRetries = 3;  // повторные запросы страницы после ошибки сети, 5xx или 429
+
+        private long baseDelay = 1_000;  // (мс) пауза перед первым повтором, далее удваивается
+
+        private long maxDelay = 30_000;  // (мс) предел паузы между повторами
+
+        private long maxRetryAfter = 120_000;  // (мс) предел паузы из заголовка Retry-After
+
+        private int failureThreshold = 5;  // ошибок подряд, после которых запросы к хосту приостанавливаются
+
+        private long pauseDuration = 30_000;  // (мс) первая приостановка хоста, далее удваивается
+
+        private long maxPauseDuration = 300_000;  // (мс) предел приостановки хоста
+
+    }
+
+}
@@ -0,0 +1,24 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "morphology-settings")
+public class ConfigMorphology {
+
+    private int cacheSize = 200_000;  // максимум слов в кэше разбора LuceneMorphology (0 - без кэша)
+
+    private long cacheStatsInterval = 60_000;  // (мс) период вывода в лог доли попаданий в кэш
+
+    private int parallelThreshold = 200_000;  // (символов) текст длиннее лемматизируется параллельно (0 - отключить)
+
+    private int parallelChunkSize = 50_000;  // (символов) размер фрагмента текста для одного потока
+
+    private int parallelism = 0;  // потоков пула лемматизации длинных страниц (0 - по числу процессоров)
+
+}
@@ -0,0 +1,18 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "search-index-settings")
+public class ConfigSearchIndex {
+
+    private boolean enabled = false;  // поиск по сегментам обратного индекса на диске вместо запросов к MySQL
+
+    private String directory = "search-index";  // каталог файлов сегментов (по одному на сайт)
+
+}
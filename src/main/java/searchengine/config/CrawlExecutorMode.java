@@ -0,0 +1,10 @@
+package searchengine.config;
+
+/*
+ * Режим выполнения задач обхода страниц сайтов
+ * */
+public enum CrawlExecutorMode {
+
+    FORK_JOIN,  // задачи PageIndexator в ForkJoinPool с потоками по числу ядер
+    VIRTUAL_THREADS  // каждая задача в своем виртуальном потоке с ограничением на сайт (Java 21+)
+}
@@ -0,0 +1,24 @@
+package searchengine.config;
+
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.security.Security;
+
+/**
+ * Время хранения разрешенных адресов хостов (crawler-settings.dns-cache-ttl).
+ * <p>
+ * Свойство networkaddress.cache.ttl действует на весь процесс JVM, а не только на загрузку страниц,
+ * и читается при первом разрешении имени. Поэтому оно задается при запуске приложения,
+ * до создания бинов и подключения к БД.</p>
+ */
+public class DnsCacheTtlInitializer implements ApplicationListener<ApplicationEnvironmentPreparedEvent> {
+
+    static final String DNS_CACHE_TTL_PROPERTY = "crawler-settings.dns-cache-ttl";
+
+    @Override
+    public void onApplicationEvent(ApplicationEnvironmentPreparedEvent event) {
+        int dnsCacheTtl = event.getEnvironment().getProperty(DNS_CACHE_TTL_PROPERTY, Integer.class, 300);
+        Security.setProperty("networkaddress.cache.ttl", String.valueOf(dnsCacheTtl));
+    }
+}
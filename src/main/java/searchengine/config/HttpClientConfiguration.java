@@ -0,0 +1,32 @@
+package searchengine.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Общий HTTP клиент для загрузки страниц сайтов.
+ * <p>
+ * Клиент один на все приложение: он держит пул keep-alive соединений по хостам,
+ * использует HTTP/2 там, где сервер его поддерживает (несколько запросов в одном сокете),
+ * и выполняет запросы асинхронно на своем селекторе.</p>
+ */
+@Configuration
+@RequiredArgsConstructor
+public class HttpClientConfiguration {
+
+    private final ConfigCrawler configCrawler;
+
+    @Bean
+    public HttpClient httpClient() {
+        // кэш DNS ответов JVM задается при запуске приложения: DnsCacheTtlInitializer
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(configCrawler.getConnectTimeout()))
+                .build();
+    }
+}
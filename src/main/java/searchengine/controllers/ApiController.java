@@ -34,9 +34,16 @@ public class ApiController {
     }
 
     @GetMapping("/startIndexing")
-    public SuccessResponseDto startIndexing() {
+    public SuccessResponseDto startIndexing(@RequestParam(required = false, defaultValue = "false") boolean incremental) {
         indexingService.removeUnusedSites();
-        indexingService.submitAll(indexingService.initSitesIndexingTasks());
+        indexingService.submitAll(indexingService.initSitesIndexingTasks(incremental));
+        return new SuccessResponseDto(true);
+    }
+
+    @GetMapping("/resumeIndexing")
+    public SuccessResponseDto resumeIndexing() {
+        indexingService.removeUnusedSites();
+        indexingService.submitAll(indexingService.initSitesResumeTasks());
         return new SuccessResponseDto(true);
     }
 
@@ -52,6 +59,11 @@ public class ApiController {
         return new SuccessResponseDto(true);
     }
 
+    @GetMapping("/progress")
+    public CrawlProgressResponseDto progress() {
+        return new CrawlProgressResponseDto(indexingService.getProgress());
+    }
+
     @GetMapping("/statistics")
     public StatisticsResponse statistics() {
         return statisticsService.getStatistics();
@@ -0,0 +1,24 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+@Data
+public class CrawlProgressDto {
+
+    private String url;  // адрес главной страницы сайта
+
+    private String status;  // статус индексации сайта
+
+    private long queued;  // задачи в очереди
+
+    private long active;  // страницы в обработке
+
+    private long done;  // обработанные страницы
+
+    private long failed;  // страницы с ошибкой
+
+    private long elapsed;  // (мс) время с начала обхода
+
+    private double pagesPerSecond;  // средняя скорость обхода
+
+}
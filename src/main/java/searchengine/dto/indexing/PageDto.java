@@ -1,10 +1,11 @@
 package searchengine.dto.indexing;
 
 import lombok.Data;
-import org.jsoup.select.Elements;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
+import java.util.List;
+
 @Data
 public class PageDto {
 
@@ -12,23 +13,48 @@ public class PageDto {
 
     private Site site;  // веб-сайт из таблицы site;
 
+    private int generation;  // поколение индекса сайта
+
     private String path;  // адрес страницы от корня сайта
     // (должен начинаться со слэша, например: /news/372189/);
 
     private Integer code;  // код HTTP-ответа, полученный при запросе
     // страницы (например, 200, 404, 500 или другие);
 
-    private String content = "";  // контент страницы (HTML-код)
+    private String content = "";  // видимый текст страницы
+
+    private String title;  // заголовок страницы из тега title
+
+    private String etag;  // заголовок ETag ответа
+
+    private String lastModified;  // заголовок Last-Modified ответа
+
+    private String contentHash;  // SHA-256 тела ответа
+
+    private Long simHash;  // отпечаток SimHash лемм страницы
+
+    private Integer duplicateOf;  // id почти такой же страницы сайта
+
+    private List<String> links;  // значения href ссылок на другие страницы
+
+    private byte[] rawBody;  // тело HTTP-ответа до разбора HTML
 
-    private Elements links;  // ссылки на другие страницы
+    private String charset;  // кодировка из заголовка ответа (null - определяется при разборе)
 
     public Page toEntity() {
         Page page = new Page();
         page.setId(id);
         page.setSite(site);
+        page.setGeneration(generation);
         page.setPath(path);
         page.setCode(code);
         page.setContent(content);
+        page.setTitle(title);
+        page.setEtag(etag);
+        page.setLastModified(lastModified);
+        page.setContentHash(contentHash);
+        page.setSimHash(simHash);
+        page.setDuplicateOf(duplicateOf);
         return page;
     }
 }
@@ -0,0 +1,18 @@
+package searchengine.dto.indexing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PageRecrawlDto {
+
+    private Integer id;  // id ранее сохраненной страницы
+
+    private String etag;  // заголовок ETag прошлого ответа
+
+    private String lastModified;  // заголовок Last-Modified прошлого ответа
+
+    private String contentHash;  // SHA-256 прошлого тела ответа
+
+}
@@ -0,0 +1,14 @@
+package searchengine.dto.indexing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PageSimHashDto {
+
+    private Integer id;  // id сохраненной страницы
+
+    private Long simHash;  // отпечаток SimHash лемм страницы
+
+}
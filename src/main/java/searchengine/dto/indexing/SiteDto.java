@@ -20,6 +20,15 @@ public class SiteDto {
 
     private String name;  // имя сайта
 
+    private int generation;  // поколение страниц и лемм сайта, по которому идет поиск
+
+    private Integer buildGeneration;  // поколение, которое заполняет полный обход (null - обход не идет)
+
+    /* Поколение, в которое пишет обход: новое при полном обходе, иначе текущее */
+    public int getWriteGeneration() {
+        return buildGeneration != null ? buildGeneration : generation;
+    }
+
     public void updateStatusTime() {
         statusTime = null;  // если оставить null, то @UpdateTimestamp в Site проставит текущее время
     }
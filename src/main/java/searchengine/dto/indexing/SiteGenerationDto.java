@@ -0,0 +1,14 @@
+package searchengine.dto.indexing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SiteGenerationDto {
+
+    private Integer siteId;  // id сайта
+
+    private Integer generation;  // поколение страниц или лемм сайта
+
+}
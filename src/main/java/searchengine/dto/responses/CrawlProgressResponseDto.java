@@ -0,0 +1,18 @@
+package searchengine.dto.responses;
+
+import lombok.Getter;
+import searchengine.dto.indexing.CrawlProgressDto;
+
+import java.util.List;
+
+@Getter
+public class CrawlProgressResponseDto extends ResponseDto {
+
+    private final List<CrawlProgressDto> progress;
+
+    public CrawlProgressResponseDto(List<CrawlProgressDto> progress) {
+        this.result = true;
+        this.progress = progress;
+    }
+
+}
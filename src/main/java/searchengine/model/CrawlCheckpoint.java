@@ -0,0 +1,46 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Entity
+@Table(name = "crawl_checkpoint")
+@Getter
+@Setter
+@NoArgsConstructor
+public class CrawlCheckpoint {
+
+    @Id
+    @Column(name = "site_id")
+    private Integer siteId;  // ID веб-сайта из таблицы site
+
+    @Column(name = "last_page_id")
+    private Integer lastPageId;  // последняя сохраненная страница сайта на момент снимка очереди
+
+    @UpdateTimestamp
+    @Column(name = "saved_at", nullable = false, columnDefinition = "DATETIME")
+    private LocalDateTime savedAt;  // дата и время снимка
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @Column(name = "pending_links", nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] pendingLinksData;  // ссылки очереди обхода через перевод строки, в формате PageContentCodec
+
+    public List<String> getPendingLinks() {
+        String links = PageContentCodec.decode(pendingLinksData);
+        return links.isEmpty() ? List.of() : List.of(links.split("\n"));
+    }
+
+    public void setPendingLinks(Collection<String> pendingLinks) {
+        pendingLinksData = PageContentCodec.encode(String.join("\n", pendingLinks));
+    }
+
+}
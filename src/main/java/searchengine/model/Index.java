@@ -3,25 +3,28 @@ package searchengine.model;
 import jakarta.persistence.*;
 import lombok.*;
 
+/**
+ * Строка обратного индекса. Первичный ключ (lemma_id, page_id) кластерный: строки одной леммы
+ * лежат в таблице подряд, поиск по лемме читает их одним диапазоном без обращений к другим индексам
+ */
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@IdClass(IndexId.class)
 @Table(name = "\"index\"")
 public class Index {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Integer id;
+    @Column(name = "lemma_id", nullable = false)
+    private Integer lemmaId;  // идентификатор леммы
 
+    @Id
     @Column(name = "page_id", nullable = false)
     private Integer pageId;  // идентификатор страницы
 
-    @Column(name = "lemma_id", nullable = false)
-    private Integer lemmaId;  // идентификатор леммы
-
-    @Column(name = "\"rank\"", nullable = false)
-    private Float rank;  // количество таких леммы для данной страницы
+    @Column(name = "\"rank\"", nullable = false, columnDefinition = "SMALLINT UNSIGNED")
+    private Integer rank;  // количество таких леммы для данной страницы
 
 }
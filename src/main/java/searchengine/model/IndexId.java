@@ -0,0 +1,22 @@
+package searchengine.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Составной первичный ключ {@link Index}
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class IndexId implements Serializable {
+
+    private Integer lemmaId;
+    private Integer pageId;
+
+}
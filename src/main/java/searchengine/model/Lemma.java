@@ -21,6 +21,9 @@ public class Lemma {
     @Column(name = "site_id", nullable = false)
     private Integer siteId;  // ID веб-сайта из таблицы site
 
+    @Column(name = "generation", nullable = false)
+    private int generation;  // поколение индекса сайта, к которому относится лемма
+
     @Column(name = "lemma", nullable = false)
     private String lemma;  // нормальная форма слова (лемма)
 
@@ -1,7 +1,12 @@
 package searchengine.model;
 
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.jsoup.Jsoup;
 
 @Data
@@ -17,6 +22,9 @@ public class Page {
     @JoinColumn(name = "site_id", nullable = false)
     private Site site;  // веб-сайт из таблицы site;
 
+    @Column(name = "generation", nullable = false)
+    private int generation;  // поколение индекса сайта, к которому относится страница
+
     @Column(name = "path", nullable = false, columnDefinition = "TEXT")
     private String path;  // относительный адрес страницы от корня сайта
 
@@ -24,11 +32,47 @@ public class Page {
     private Integer code;  // код HTTP-ответа, полученный при запросе
         // страницы (например, 200, 404, 500 или другие);
 
-    @Column(name = "content", nullable = false, columnDefinition = "MEDIUMTEXT")
-    private String content;  // контент страницы (HTML-код)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @Column(name = "content", nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] contentData;  // видимый текст страницы в формате PageContentCodec
+
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private String content;  // распакованный текст, заполняется при первом обращении
+
+    @Column(name = "title", columnDefinition = "TEXT")
+    private String title;  // заголовок страницы из тега title
+
+    @Column(name = "etag")
+    private String etag;  // заголовок ETag ответа для условных запросов
+
+    @Column(name = "last_modified", length = 64)
+    private String lastModified;  // заголовок Last-Modified ответа для условных запросов
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;  // SHA-256 тела ответа
+
+    @Column(name = "simhash")
+    private Long simHash;  // отпечаток SimHash лемм страницы
+
+    @Column(name = "duplicate_of")
+    private Integer duplicateOf;  // id почти такой же страницы сайта, дубликат не индексируется
+
+    public String getContent() {
+        if (content == null) content = PageContentCodec.decode(contentData);
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+        contentData = PageContentCodec.encode(content);
+    }
 
     public String getTitle() {
-        return Jsoup.parse(content).title();
+        return title != null ? title : Jsoup.parse(getContent()).title();  // страницы, сохраненные до появления столбца
     }
 
 }
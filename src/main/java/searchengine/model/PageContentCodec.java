@@ -0,0 +1,86 @@
+package searchengine.model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Формат хранения контента страницы в BLOB: первый байт - маркер кодека, далее данные.
+ * <ul>
+ *     <li>{@code 0x00} - текст в UTF-8 без сжатия (короткие страницы);</li>
+ *     <li>{@code 0x01} - формат MySQL {@code COMPRESS()}: длина исходных данных (4 байта, little-endian)
+ *     и поток zlib, поэтому существующие строки переносятся миграцией прямо в SQL.</li>
+ * </ul>
+ */
+public class PageContentCodec {
+
+    static final byte RAW = 0x00;
+    static final byte DEFLATE = 0x01;
+    static final int MIN_COMPRESS_SIZE = 256;  // (байт) короче этого текст хранится без сжатия
+
+    private PageContentCodec() {
+    }
+
+    public static byte[] encode(String content) {
+        byte[] data = (content == null ? "" : content).getBytes(StandardCharsets.UTF_8);
+        if (data.length < MIN_COMPRESS_SIZE) return withMarker(RAW, data);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 16);
+            out.write(DEFLATE);
+            out.write(data.length);
+            out.write(data.length >>> 8);
+            out.write(data.length >>> 16);
+            out.write(data.length >>> 24);
+            byte[] buffer = new byte[8 * 1024];
+            while (!deflater.finished()) out.write(buffer, 0, deflater.deflate(buffer));
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static String decode(byte[] encoded) {
+        if (encoded == null || encoded.length < 2) return "";
+        return switch (encoded[0]) {
+            case RAW -> new String(encoded, 1, encoded.length - 1, StandardCharsets.UTF_8);
+            case DEFLATE -> new String(inflate(encoded), StandardCharsets.UTF_8);
+            default -> throw new IllegalStateException("Неизвестный кодек контента страницы: " + encoded[0]);
+        };
+    }
+
+    private static byte[] inflate(byte[] encoded) {
+        if (encoded.length < 5) return new byte[0];  // COMPRESS('') - пустая строка
+        int length = (encoded[1] & 0xFF) | (encoded[2] & 0xFF) << 8
+                | (encoded[3] & 0xFF) << 16 | (encoded[4] & 0xFF) << 24;
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(encoded, 5, encoded.length - 5);
+            byte[] data = new byte[length];
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int inflated = inflater.inflate(data, read, length - read);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                read += inflated;
+            }
+            return read == length ? data : Arrays.copyOf(data, read);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Поврежден сжатый контент страницы", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] withMarker(byte marker, byte[] data) {
+        byte[] encoded = new byte[data.length + 1];
+        encoded[0] = marker;
+        System.arraycopy(data, 0, encoded, 1, data.length);
+        return encoded;
+    }
+}
@@ -36,4 +36,10 @@ public class Site {
     @Column(name = "name", nullable = false)
     private String name;  // имя сайта
 
+    @Column(name = "generation", nullable = false)
+    private int generation;  // поколение страниц и лемм сайта, по которому идет поиск
+
+    @Column(name = "build_generation")
+    private Integer buildGeneration;  // поколение, которое заполняет полный обход (null - обход не идет)
+
 }
@@ -0,0 +1,49 @@
+package searchengine.repositories;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики пакетной записи по таблицам: количество строк и время записи.
+ * Скорость записи (строк/с) за прошедший период выводится в лог
+ */
+@Slf4j
+@Component
+public class BulkWriteStats {
+
+    private final Map<String, TableStats> tables = new ConcurrentHashMap<>();
+
+    /**
+     * @param table таблица
+     * @param rows количество записанных строк
+     * @param nanos время записи пакета
+     */
+    public void record(String table, int rows, long nanos) {
+        TableStats stats = tables.computeIfAbsent(table, key -> new TableStats());
+        stats.rows.add(rows);
+        stats.nanos.add(nanos);
+    }
+
+    @Scheduled(fixedDelayString = "${crawler-settings.bulk-write-stats-interval:60000}",
+            initialDelayString = "${crawler-settings.bulk-write-stats-interval:60000}")
+    public void logStats() {
+        tables.forEach((table, stats) -> {
+            long rows = stats.rows.sumThenReset();
+            long nanos = stats.nanos.sumThenReset();
+            if (rows == 0) return;
+            log.info("Запись в " + table + ": " + rows + " строк, " +
+                    Math.round(rows * 1_000_000_000.0 / Math.max(nanos, 1)) + " строк/с");
+        });
+    }
+
+    private static class TableStats {
+
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder nanos = new LongAdder();  // суммарное время записи пакетов
+    }
+}
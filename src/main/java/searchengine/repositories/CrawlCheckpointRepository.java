@@ -0,0 +1,7 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import searchengine.model.CrawlCheckpoint;
+
+public interface CrawlCheckpointRepository extends JpaRepository<CrawlCheckpoint, Integer> {
+}
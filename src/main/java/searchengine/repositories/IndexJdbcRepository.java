@@ -0,0 +1,74 @@
+package searchengine.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import searchengine.model.Index;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+
+/**
+ * Пакетная запись индексов через JDBC.
+ * <p>
+ * Hibernate не объединяет вставки сущностей с GenerationType.IDENTITY в пакеты, поэтому каждая строка
+ * индекса шла отдельным INSERT. Здесь строки страницы отправляются пакетами, а драйвер MySQL
+ * с rewriteBatchedStatements=true превращает пакет в многострочный INSERT.</p>
+ */
+@Repository
+@RequiredArgsConstructor
+public class IndexJdbcRepository {
+
+    static final String INSERT_INDEX_SQL = "INSERT INTO `index` (page_id, lemma_id, `rank`) VALUES (?, ?, ?)";
+    static final String SELECT_POSTINGS_SQL = "SELECT i.lemma_id, i.page_id, i.`rank` FROM lemma AS l " +
+            "JOIN `index` AS i ON i.lemma_id = l.id " +
+            "WHERE l.site_id = ? AND l.generation = ? " +
+            "ORDER BY i.lemma_id, i.page_id";
+    static final int BATCH_SIZE = 1_000;  // строк в одном пакете (ограничение max_allowed_packet)
+    static final int MAX_RANK = 65_535;  // предел SMALLINT UNSIGNED
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BulkWriteStats bulkWriteStats;
+
+    /**
+     * @param indexes индексы страницы без id
+     * @return количество записанных строк
+     */
+    public int insertAll(List<Index> indexes) {
+        if (indexes.isEmpty()) return 0;
+        long startTime = System.nanoTime();
+        jdbcTemplate.batchUpdate(INSERT_INDEX_SQL, indexes, BATCH_SIZE, (statement, index) -> {
+            statement.setInt(1, index.getPageId());
+            statement.setInt(2, index.getLemmaId());
+            statement.setInt(3, Math.min(index.getRank(), MAX_RANK));
+        });
+        bulkWriteStats.record("index", indexes.size(), System.nanoTime() - startTime);
+        return indexes.size();
+    }
+
+    /**
+     * Чтение всех индексов поколения сайта по возрастанию (lemma_id, page_id)
+     * @param siteId id сайта
+     * @param generation поколение индекса сайта
+     * @param consumer получатель строк
+     */
+    public void streamPostings(int siteId, int generation, PostingConsumer consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_POSTINGS_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Integer.MIN_VALUE);  // драйвер MySQL отдает строки потоком, а не все сразу
+            statement.setInt(1, siteId);
+            statement.setInt(2, generation);
+            return statement;
+        }, (RowCallbackHandler) resultSet ->
+                consumer.accept(resultSet.getInt(1), resultSet.getInt(2), resultSet.getInt(3)));
+    }
+
+    @FunctionalInterface
+    public interface PostingConsumer {
+
+        void accept(int lemmaId, int pageId, int rank);
+    }
+}
@@ -3,24 +3,25 @@ package searchengine.repositories;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import searchengine.model.Index;
+import searchengine.model.IndexId;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-
-public interface IndexRepository extends JpaRepository<Index, Integer> {
+public interface IndexRepository extends JpaRepository<Index, IndexId> {
 
     Set<Index> findAllByPageId(Integer pageId);
 
-    Set<Index> findByLemmaIdIn(Set<Integer> lemmaIdList);
+    /* Читает только первичный ключ (lemma_id, page_id): по диапазону на каждую лемму */
+    @Query("SELECT DISTINCT i.pageId FROM Index i WHERE i.lemmaId IN :lemmaIdSet")
+    Set<Integer> findPageIdsByLemmaIdIn(Set<Integer> lemmaIdSet);
 
     @Query(value = "WITH pages_ranks_sum AS (" +
                 "SELECT page_id, SUM(`rank`) AS rank_sum " +
-                "FROM `index` AS i " +
-                "JOIN lemma AS l on i.lemma_id = l.id " +
+                "FROM `index` " +
                 "WHERE lemma_id IN (:lemmaIdSet) and page_id IN (:pageIdSet) " +
-                "GROUP BY i.page_id" +
+                "GROUP BY page_id" +
             ")" +
             "SELECT page_id, rank_sum as absolute_relevance, " +
                     "rank_sum / (select max(rank_sum) from pages_ranks_sum) AS relative_relevance " +
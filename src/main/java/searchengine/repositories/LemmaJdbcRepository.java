@@ -0,0 +1,72 @@
+package searchengine.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетная запись лемм через JDBC: атомарные изменения frequency без чтения строк в JPA
+ */
+@Repository
+@RequiredArgsConstructor
+public class LemmaJdbcRepository {
+
+    static final String INSERT_LEMMA_SQL =
+            "INSERT IGNORE INTO lemma (site_id, generation, lemma, frequency) VALUES (?, ?, ?, 0)";
+    static final String ADD_FREQUENCY_SQL = "UPDATE lemma SET frequency = frequency + ? WHERE id = ?";
+    static final String DELETE_UNUSED_SQL =
+            "DELETE FROM lemma WHERE site_id = ? AND generation = ? AND frequency <= 0";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BulkWriteStats bulkWriteStats;
+
+    /**
+     * Добавляет отсутствующие леммы сайта с frequency = 0 одним пакетом, частота меняется
+     * через {@link #addFrequencyDeltas(Map)}. Леммы, уже добавленные параллельной страницей, пропускаются
+     * @param siteId id сайта
+     * @param generation поколение индекса сайта
+     * @param lemmas новые леммы страницы
+     */
+    public void insertIfAbsent(int siteId, int generation, Collection<String> lemmas) {
+        if (lemmas.isEmpty()) return;
+        List<Object[]> batchArgs = lemmas.stream()
+                .sorted()  // одинаковый порядок блокировки строк у параллельных страниц исключает взаимоблокировки
+                .map(lemma -> new Object[]{siteId, generation, lemma})
+                .toList();
+        long startTime = System.nanoTime();
+        jdbcTemplate.batchUpdate(INSERT_LEMMA_SQL, batchArgs);
+        bulkWriteStats.record("lemma", batchArgs.size(), System.nanoTime() - startTime);
+    }
+
+    /**
+     * Применяет накопленные изменения frequency одним пакетом в одной транзакции:
+     * при ошибке не записывается ни одно изменение, и весь пакет можно повторить
+     * @param deltas id леммы - изменение frequency (в порядке возрастания id)
+     */
+    @Transactional
+    public void addFrequencyDeltas(Map<Integer, Integer> deltas) {
+        if (deltas.isEmpty()) return;
+        List<Object[]> batchArgs = deltas.entrySet().stream()
+                .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                .toList();
+        long startTime = System.nanoTime();
+        jdbcTemplate.batchUpdate(ADD_FREQUENCY_SQL, batchArgs);
+        bulkWriteStats.record("lemma.frequency", batchArgs.size(), System.nanoTime() - startTime);
+    }
+
+    /**
+     * Удаляет леммы сайта, которые больше не встречаются ни на одной странице.
+     * Вызывается после окончания обхода: индексы удаляемых лемм удаляются каскадно
+     * @param siteId id сайта
+     * @param generation поколение индекса сайта
+     * @return количество удаленных лемм
+     */
+    public int deleteUnusedBySiteIdAndGeneration(int siteId, int generation) {
+        return jdbcTemplate.update(DELETE_UNUSED_SQL, siteId, generation);
+    }
+}
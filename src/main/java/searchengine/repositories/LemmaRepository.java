@@ -1,18 +1,40 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.indexing.SiteGenerationDto;
 import searchengine.model.Lemma;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
 
-    Set<Lemma> findAllBySiteId(int siteId);
+    List<Lemma> findAllBySiteIdAndGenerationAndLemmaIn(int siteId, int generation, Collection<String> lemmas);
 
-    @Query(value = "SELECT COUNT(1) FROM lemma WHERE site_id = :siteId", nativeQuery = true)
-    int countAllBySiteId(int siteId);
+    @Query(value = "SELECT COUNT(1) FROM lemma WHERE site_id = :siteId AND generation = :generation",
+            nativeQuery = true)
+    int countAllBySiteIdAndGeneration(int siteId, int generation);
 
-    Set<Lemma> findAllByLemmaInOrderByFrequencyAsc(Set<String> lemmas);
+    /* Только леммы поколений, по которым идет поиск */
+    @Query("SELECT l FROM Lemma l, Site s " +
+            "WHERE l.lemma IN :lemmas AND s.id = l.siteId AND l.generation = s.generation " +
+            "ORDER BY l.frequency ASC")
+    Set<Lemma> findAllActiveByLemmaInOrderByFrequencyAsc(Set<String> lemmas);
+
+    @Query(value = "SELECT COALESCE(MAX(generation), 0) FROM lemma WHERE site_id = :siteId", nativeQuery = true)
+    int findMaxGenerationBySiteId(int siteId);
+
+    @Query("SELECT DISTINCT new searchengine.dto.indexing.SiteGenerationDto(l.siteId, l.generation) FROM Lemma l")
+    List<SiteGenerationDto> findAllSiteGenerations();
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM lemma WHERE site_id = :siteId AND generation = :generation LIMIT :limit",
+            nativeQuery = true)
+    int deleteBySiteIdAndGeneration(int siteId, int generation, int limit);
 
 }
@@ -1,19 +1,81 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.indexing.PageRecrawlDto;
+import searchengine.dto.indexing.PageSimHashDto;
+import searchengine.dto.indexing.SiteGenerationDto;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 public interface PageRepository extends JpaRepository<Page, Integer> {
 
-    @Query(value = "SELECT COUNT(1) FROM page WHERE site_id = :siteId", nativeQuery = true)
-    int countAllBySiteId(int siteId);
-
-    Set<Page> findAllBySite(Site site);
+    @Query(value = "SELECT COUNT(1) FROM page WHERE site_id = :siteId AND generation = :generation",
+            nativeQuery = true)
+    int countAllBySiteIdAndGeneration(int siteId, int generation);
 
     Set<Page> findAllBySiteAndPath(Site site, String path);
 
+    @Query("SELECT p.path FROM Page p WHERE p.site.id = :siteId AND p.generation = :generation")
+    List<String> findAllPathsBySiteIdAndGeneration(int siteId, int generation);
+
+    @Query("SELECT p.path FROM Page p WHERE p.site.id = :siteId AND p.generation = :generation AND p.id <= :maxId")
+    List<String> findAllPathsBySiteIdAndGenerationAndIdLessThanEqual(int siteId, int generation, int maxId);
+
+    @Query("SELECT p.path FROM Page p WHERE p.site.id = :siteId AND p.generation = :generation AND p.id > :minId")
+    List<String> findAllPathsBySiteIdAndGenerationAndIdGreaterThan(int siteId, int generation, int minId);
+
+    @Query("SELECT MAX(p.id) FROM Page p WHERE p.site.id = :siteId AND p.generation = :generation")
+    Integer findMaxIdBySiteIdAndGeneration(int siteId, int generation);
+
+    @Query("SELECT new searchengine.dto.indexing.PageRecrawlDto(p.id, p.etag, p.lastModified, p.contentHash) " +
+            "FROM Page p WHERE p.site.id = :siteId AND p.generation = :generation AND p.path = :path")
+    List<PageRecrawlDto> findRecrawlInfoBySiteIdAndGenerationAndPath(int siteId, int generation, String path);
+
+    default Optional<PageRecrawlDto> findOneRecrawlInfoBySiteIdAndGenerationAndPath(int siteId, int generation,
+                                                                                   String path) {
+        return findRecrawlInfoBySiteIdAndGenerationAndPath(siteId, generation, path).stream().findFirst();
+    }
+
+    @Query("SELECT new searchengine.dto.indexing.PageSimHashDto(p.id, p.simHash) FROM Page p " +
+            "WHERE p.site.id = :siteId AND p.generation = :generation " +
+            "AND p.simHash IS NOT NULL AND p.duplicateOf IS NULL")
+    List<PageSimHashDto> findAllSimHashesBySiteIdAndGeneration(int siteId, int generation);
+
+    @Query(value = "SELECT COALESCE(MAX(generation), 0) FROM page WHERE site_id = :siteId", nativeQuery = true)
+    int findMaxGenerationBySiteId(int siteId);
+
+    /* Читается только индекс (site_id, generation) */
+    @Query("SELECT DISTINCT new searchengine.dto.indexing.SiteGenerationDto(p.site.id, p.generation) FROM Page p")
+    List<SiteGenerationDto> findAllSiteGenerations();
+
+    /* Индексы удаляемых страниц удаляются каскадно, поэтому страницы удаляются небольшими порциями */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM page WHERE site_id = :siteId AND generation = :generation LIMIT :limit",
+            nativeQuery = true)
+    int deleteBySiteIdAndGeneration(int siteId, int generation, int limit);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Page p SET p.etag = :etag, p.lastModified = :lastModified WHERE p.id = :id")
+    void updateValidatorsById(int id, String etag, String lastModified);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Page p SET p.duplicateOf = :duplicateOf WHERE p.id = :id")
+    void updateDuplicateOfById(int id, int duplicateOf);
+
+    /* Дубликаты удаленной страницы: без content_hash при следующем обходе они лемматизируются заново */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Page p SET p.duplicateOf = NULL, p.contentHash = NULL WHERE p.duplicateOf = :pageId")
+    int clearDuplicateOf(int pageId);
+
 }
@@ -1,9 +1,13 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Site;
 import searchengine.model.SiteStatus;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,8 +15,20 @@ public interface SiteRepository extends JpaRepository<Site, Integer> {
 
     List<Site> findAllByStatus(SiteStatus status);
 
-    List<Site> findAllByUrl(String url);
-
     Optional<Site> findOneByUrl(String url);
 
+    /* Запись статуса без предварительного чтения строки сайта */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Site s SET s.status = :status, s.statusTime = :statusTime, s.lastError = :lastError " +
+            "WHERE s.id = :id")
+    void updateStatusById(int id, SiteStatus status, LocalDateTime statusTime, String lastError);
+
+    /* Переключение поиска на заполненное поколение одним UPDATE строки сайта */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Site s SET s.generation = :generation, s.buildGeneration = NULL " +
+            "WHERE s.id = :id AND s.buildGeneration = :generation")
+    int activateGeneration(int id, int generation);
+
 }
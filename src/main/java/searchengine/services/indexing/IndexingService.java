@@ -5,7 +5,6 @@ import searchengine.exceptions.ConfigSiteNotFoundException;
 import searchengine.exceptions.IndexingAlreadyLaunchedException;
 import searchengine.exceptions.IndexingIsNotLaunchedException;
 import searchengine.model.*;
-import searchengine.repositories.IndexRepository;
 import searchengine.services.indexing.utils.PageIndexator;
 
 import java.util.*;
@@ -22,9 +21,18 @@ public interface IndexingService {
 
     /**
      * Метод обхода сайтов из конфигурационного файла и подготовки тасок на индексацию
+     * @param incremental обновить ранее проиндексированные сайты без очистки: известные страницы
+     *                    запрашиваются условно, неизменные страницы не переиндексируются
      * @throws IndexingAlreadyLaunchedException если уже запущена индексация
      * **/
-    List<PageIndexator> initSitesIndexingTasks();
+    List<PageIndexator> initSitesIndexingTasks(boolean incremental);
+
+    /**
+     * Метод подготовки тасок для продолжения прерванной индексации с сохраненных контрольных точек.
+     * Сайты без контрольной точки индексируются полностью, проиндексированные сайты пропускаются
+     * @throws IndexingAlreadyLaunchedException если уже запущена индексация
+     * **/
+    List<PageIndexator> initSitesResumeTasks();
 
     /**
      * Метод для подготовки таски на индексацию конкретной страницы
@@ -47,14 +55,18 @@ public interface IndexingService {
     void stopAll();
 
     /**
-     * @param indexRepository репозиторий индексов
-     * @param lemmasToIndex список объектов Lemma для индексации
+     * Метод получения прогресса последнего обхода каждого сайта без обращения к БД
+     * @return снимки счетчиков задач: в очереди, в обработке, обработано, с ошибкой и скорость обхода
+     */
+    List<CrawlProgressDto> getProgress();
+
+    /**
+     * @param lemmaIdsToIndex key-value мапа лемм для индексации: "лемма" - "id в БД"
      * @param pageLemmasCount key-value мапа текущей страницы: "лемма" - "кол-во на странице"
      * @param pageDto Dto с инфой страницы
      * @return кол-во сохраненных индексов
      */
-    int indexLemmas(IndexRepository indexRepository,
-                           List<Lemma> lemmasToIndex,
-                           Map<String, Integer> pageLemmasCount,
-                           PageDto pageDto);
+    int indexLemmas(Map<String, Integer> lemmaIdsToIndex,
+                    Map<String, Integer> pageLemmasCount,
+                    PageDto pageDto);
 }
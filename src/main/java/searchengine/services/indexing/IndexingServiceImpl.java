@@ -12,12 +12,16 @@ import searchengine.exceptions.IndexingIsNotLaunchedException;
 import searchengine.mappers.SiteMapper;
 import searchengine.model.*;
 import searchengine.repositories.*;
-import searchengine.services.indexing.utils.PageIndexator;
+import searchengine.services.indexing.utils.*;
 import searchengine.services.morphology.LemmasService;
+import searchengine.services.searching.index.SearchIndexEngine;
 
+import java.net.http.HttpClient;
 import java.util.*;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -28,22 +32,54 @@ public class IndexingServiceImpl implements IndexingService {
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final IndexRepository indexRepository;
+    private final IndexJdbcRepository indexJdbcRepository;  // пакетная запись индексов
     private final ConfigSiteList configSites;  // сайты из конфигурационного файла
+    private final HostFetchScheduler hostFetchScheduler;  // общий планировщик запросов по хостам
+    private final HttpClient httpClient;  // общий HTTP клиент с пулом соединений
+    private final ConfigCrawler configCrawler;  // настройки обхода сайтов
+    private final RobotsTxtCache robotsTxtCache;  // правила robots.txt по хостам
+    private final SitemapSeeder sitemapSeeder;  // ссылки из sitemap.xml для начала обхода
+    private final CrawlCheckpointManager crawlCheckpointManager;  // контрольные точки для продолжения обхода
+    private final SiteStatusHeartbeat siteStatusHeartbeat;  // состояние индексируемых сайтов в памяти
+    private final IndexGenerationManager indexGenerationManager;  // поколения индекса сайтов
+    private final SearchIndexEngine searchIndexEngine;  // сегменты обратного индекса для поиска
 
-    private ForkJoinPool fjp = new ForkJoinPool();  // ForkJoinPool для контроля за индексируемыми сайтами
+    private CrawlExecutor crawlExecutor;  // исполнитель для контроля за индексируемыми сайтами
+    private PageIndexingPipeline pipeline;  // конвейер обработки загруженных страниц
+    private final Map<String, Supplier<CrawlProgressDto>> lastCrawlProgress = new ConcurrentHashMap<>();  // прогресс
+        // последнего обхода каждого сайта по url: счетчики идущего обхода или итоговый снимок завершенного
 
     @Override
     @Transactional
     public void removeUnusedSites() {
-        siteRepository.deleteAll(getUnusedSites());
+        List<Site> unusedSites = getUnusedSites();
+        siteRepository.deleteAll(unusedSites);
+        unusedSites.forEach(site -> {
+            lemmasService.clearSiteCache(site.getId());
+            searchIndexEngine.invalidate(site.getId());
+        });
     }
 
     @Override
     @Transactional
-    public List<PageIndexator> initSitesIndexingTasks() {
+    public List<PageIndexator> initSitesIndexingTasks(boolean incremental) {
         try {
             return configSites.getSites().stream()
-                    .map(this::initIndexingTask)
+                    .map(configSite -> initIndexingTasks(configSite, incremental))
+                    .flatMap(List::stream)
+                    .toList();
+        } catch (IndexingAlreadyLaunchedException e) {
+            throw new IndexingAlreadyLaunchedException("Индексация уже запущена");
+        }
+    }
+
+    @Override
+    @Transactional
+    public List<PageIndexator> initSitesResumeTasks() {
+        try {
+            return configSites.getSites().stream()
+                    .map(this::initResumeTasks)
+                    .flatMap(List::stream)
                     .toList();
         } catch (IndexingAlreadyLaunchedException e) {
             throw new IndexingAlreadyLaunchedException("Индексация уже запущена");
@@ -55,14 +91,19 @@ public class IndexingServiceImpl implements IndexingService {
     public PageIndexator initPageIndexingTask(String queryUrl) {
         ConfigSite configSite = getConfigSiteByUrlOrThrowConfigSiteNotFoundException(queryUrl);
         log.info("Выполняется индексация/обновление страницы \"" + queryUrl + "\"");
-        return initIndexingTask(configSite, queryUrl, true);
+        return initIndexingTask(configSite, queryUrl, true, false);
     }
 
     @Override
     @Transactional
-    public void submitAll(List<PageIndexator> tasksToSubmit) {
-        fjp = new ForkJoinPool();
-        tasksToSubmit.forEach(fjp::submit);  // процесс не дожидается завершения таски
+    public synchronized void submitAll(List<PageIndexator> tasksToSubmit) {
+        if (crawlExecutor == null || crawlExecutor.isShutdown()) crawlExecutor = createCrawlExecutor();
+        if (pipeline == null || pipeline.isShutdown()) pipeline = new PageIndexingPipeline(configCrawler.getPipeline());
+        tasksToSubmit.forEach(task -> {
+            task.getCrawlContext().setCrawlExecutor(crawlExecutor);
+            task.getCrawlContext().setPipeline(pipeline);
+        });
+        tasksToSubmit.forEach(crawlExecutor::submit);  // процесс не дожидается завершения таски
     }
 
     @Override
@@ -70,8 +111,34 @@ public class IndexingServiceImpl implements IndexingService {
     public void stopAll() {
         List<Site> indexingSites = siteRepository.findAllByStatus(SiteStatus.INDEXING);
         if (indexingSites.isEmpty()) throw new IndexingIsNotLaunchedException("Индексация не запущена");
+        crawlCheckpointManager.saveAll();  // до смены статуса, пока очереди сайтов не очищены
         indexingSites.forEach(this::stopSiteIndexing);
-        fjp.shutdownNow();
+        synchronized (this) {
+            if (crawlExecutor != null) crawlExecutor.shutdownNow();
+            if (pipeline != null) pipeline.shutdownNow();
+        }
+    }
+
+    @Override
+    public List<CrawlProgressDto> getProgress() {
+        List<CrawlProgressDto> progress = new ArrayList<>();
+        lastCrawlProgress.forEach((url, source) -> {
+            CrawlProgressDto progressDto = source.get();
+            if (!progressDto.getStatus().equals(SiteStatus.INDEXING.name())) {
+                lastCrawlProgress.replace(url, source, () -> progressDto);  // обход завершен: дальше только снимок
+            }
+            progress.add(progressDto);
+        });
+        progress.sort(Comparator.comparing(CrawlProgressDto::getUrl));
+        return progress;
+    }
+
+    private CrawlExecutor createCrawlExecutor() {
+        log.info("Задачи обхода сайтов выполняются в режиме " + configCrawler.getExecutorMode());
+        return switch (configCrawler.getExecutorMode()) {
+            case FORK_JOIN -> new ForkJoinCrawlExecutor();
+            case VIRTUAL_THREADS -> new VirtualThreadCrawlExecutor(configCrawler.getMaxConcurrentPagesPerSite());
+        };
     }
 
     private List<Site> getUnusedSites() {
@@ -92,9 +159,88 @@ public class IndexingServiceImpl implements IndexingService {
                         " А также проверьте конфигурационный файл на наличие сайта в нем!"));
     }
 
-    private PageIndexator initIndexingTask(ConfigSite configSite) {
-        log.info("Выполняется обработка сайта \"" + configSite.getName() + "\" с url = " + configSite.getUrl());
-        return initIndexingTask(configSite, configSite.getUrl(), false);
+    private List<PageIndexator> initIndexingTasks(ConfigSite configSite, boolean incremental) {
+        log.info("Выполняется обработка сайта \"" + configSite.getName() + "\" с url = " + configSite.getUrl() +
+                (incremental ? " (обновление)" : ""));
+        PageIndexator rootTask = initIndexingTask(configSite, configSite.getUrl(), false, incremental);
+        crawlCheckpointManager.register(rootTask.getCrawlContext());
+        if (!rootTask.getCrawlContext().isIncremental()) return List.of(rootTask);
+
+        List<PageIndexator> tasks = new ArrayList<>();
+        tasks.add(rootTask);
+        tasks.addAll(initKnownPagesTasks(rootTask));
+        return tasks;
+    }
+
+    /* При обновлении повторно запрашиваются все известные страницы, а не только достижимые по изменившимся ссылкам */
+    private List<PageIndexator> initKnownPagesTasks(PageIndexator rootTask) {
+        SiteCrawlContext crawlContext = rootTask.getCrawlContext();
+        List<PageIndexator> tasks = pageRepository
+                .findAllPathsBySiteIdAndGeneration(crawlContext.getSiteId(), crawlContext.getGeneration()).stream()
+                .map(path -> crawlContext.getSiteUrl().concat(path))
+                .filter(crawlContext.getFrontier()::tryVisit)
+                .map(link -> new PageIndexator(link, crawlContext, this,
+                        lemmasService, pageRepository, indexRepository, false))
+                .toList();
+        log.info("Для обновления сайта " + crawlContext.getSiteUrl() + " запланировано " +
+                tasks.size() + " известных страниц");
+        return tasks;
+    }
+
+    /* Продолжение с контрольной точки: страницы до нее уже в БД, в обход ставятся ссылки из сохраненной очереди */
+    private List<PageIndexator> initResumeTasks(ConfigSite configSite) {
+        Optional<Site> optionalSite = getSiteEntityByConfig(configSite);
+        if (optionalSite.isPresent() && optionalSite.get().getStatus() == SiteStatus.INDEXED) {
+            log.info("Сайт \"" + configSite.getName() + "\" уже проиндексирован, продолжать нечего");
+            return List.of();
+        }
+        Optional<CrawlCheckpoint> checkpoint = optionalSite
+                .flatMap(site -> crawlCheckpointManager.findBySiteId(site.getId()));
+        if (checkpoint.isEmpty()) {
+            log.info("Для сайта \"" + configSite.getName() + "\" нет контрольной точки, запускается полный обход");
+            return initIndexingTasks(configSite, false);
+        }
+
+        SiteDto siteDto = initSiteDtoFromRepositoryOrCreateNew(configSite);
+        siteDto.setLastError(null);
+        Site siteEntity = SiteMapper.INSTANCE.siteDtoToSite(siteDto);
+        siteDto = SiteMapper.INSTANCE.siteToSiteDto(siteRepository.saveAndFlush(siteEntity));
+
+        String rootLink = siteDto.getUrl().endsWith("/") ? siteDto.getUrl() : siteDto.getUrl().concat("/");
+        SiteCrawlContext crawlContext = newCrawlContext(siteDto, siteDto.getWriteGeneration(), rootLink,
+                CrawlMode.RESUME, true);  // прерванный полный обход продолжает заполнять свое поколение
+        List<PageIndexator> tasks = initCheckpointTasks(crawlContext, siteDto, checkpoint.get());
+        if (tasks.isEmpty()) {  // очередь на момент остановки уже была обработана
+            crawlContext.finishSite(SiteStatus.INDEXED, null);
+            crawlCheckpointManager.deleteBySiteId(siteDto.getId());
+            return tasks;
+        }
+        crawlCheckpointManager.register(crawlContext);
+        log.info("Обход сайта " + siteDto.getUrl() + " продолжается с контрольной точки " +
+                checkpoint.get().getSavedAt() + ", страниц в очереди: " + tasks.size());
+        return tasks;
+    }
+
+    private List<PageIndexator> initCheckpointTasks(SiteCrawlContext crawlContext, SiteDto siteDto,
+                                                    CrawlCheckpoint checkpoint) {
+        int lastPageId = checkpoint.getLastPageId() == null ? 0 : checkpoint.getLastPageId();
+        SiteFrontier frontier = crawlContext.getFrontier();
+        pageRepository.findAllPathsBySiteIdAndGenerationAndIdLessThanEqual(siteDto.getId(),
+                        crawlContext.getGeneration(), lastPageId)
+                .forEach(path -> frontier.tryVisit(crawlContext.getSiteUrl().concat(path)));
+
+        // страницы, сохраненные после снимка очереди, загружаются повторно ради их ссылок
+        List<String> savedAfterCheckpoint = pageRepository
+                .findAllPathsBySiteIdAndGenerationAndIdGreaterThan(siteDto.getId(), crawlContext.getGeneration(),
+                        lastPageId).stream()
+                .map(path -> crawlContext.getSiteUrl().concat(path))
+                .toList();
+        return Stream.concat(checkpoint.getPendingLinks().stream(), savedAfterCheckpoint.stream())
+                .filter(link -> link.equals(crawlContext.getRootLink()) || frontier.tryVisit(link))
+                .distinct()
+                .map(link -> new PageIndexator(link, crawlContext, this,
+                        lemmasService, pageRepository, indexRepository, false))
+                .toList();
     }
 
     private Optional<Site> getSiteEntityByConfig(ConfigSite configSite) {
@@ -127,29 +273,77 @@ public class IndexingServiceImpl implements IndexingService {
         return siteDto;
     }
 
-    private void removeSiteFromRepository(SiteDto siteDto) {
-        List<Site> foundPages = siteRepository.findAllByUrl(siteDto.getUrl());
-        siteRepository.deleteAll(foundPages);  // очищаем прошлые записи индексации страниц сайта
-        siteRepository.flush();
+    /* Полный обход пишет в новое поколение индекса, прошлое остается доступным поиску до окончания обхода */
+    private int startNewGeneration(SiteDto siteDto) {
+        int generation = indexGenerationManager.nextGeneration(siteDto);
+        siteDto.setBuildGeneration(generation);
+        if (siteDto.getId() != null) crawlCheckpointManager.deleteBySiteId(siteDto.getId());  // точка прошлого обхода
+        log.info("Обход сайта " + siteDto.getUrl() + " заполняет поколение индекса " + generation +
+                ", поиск идет по поколению " + siteDto.getGeneration());
+        return generation;
     }
 
-    private PageIndexator initIndexingTask(ConfigSite configSite, String url, boolean onlyThisPageIndexing) {
+    private PageIndexator initIndexingTask(ConfigSite configSite, String url,
+                                           boolean onlyThisPageIndexing, boolean incremental) {
         SiteDto siteDto = initSiteDtoFromRepositoryOrCreateNew(configSite);
+        incremental = incremental && siteDto.getId() != null;  // впервые индексируемый сайт обходится полностью
 
-        if (!onlyThisPageIndexing && siteDto.getId() != null) {
-            removeSiteFromRepository(siteDto);
-            siteDto.setId(null);
+        int generation = siteDto.getGeneration();  // страница пользователя и обновление меняют текущее поколение
+        if (!onlyThisPageIndexing && !incremental) {
+            generation = startNewGeneration(siteDto);
+        } else if (incremental && siteDto.getBuildGeneration() != null) {
+            log.info("Незавершенный полный обход сайта " + siteDto.getUrl() + " отменен обновлением");
+            siteDto.setBuildGeneration(null);  // его поколение удалится в фоне
         }
 
         siteDto.updateStatusTime();
         Site siteEntity = SiteMapper.INSTANCE.siteDtoToSite(siteDto);
         siteDto = SiteMapper.INSTANCE.siteToSiteDto(siteRepository.saveAndFlush(siteEntity));
 
-        return new PageIndexator(siteDto, url.endsWith("/") ? url : url.concat("/"), this,
-                lemmasService, siteRepository, pageRepository, indexRepository, onlyThisPageIndexing);
+        String rootLink = url.endsWith("/") ? url : url.concat("/");
+        SiteCrawlContext crawlContext = newCrawlContext(siteDto, generation, rootLink,
+                incremental ? CrawlMode.INCREMENTAL : CrawlMode.FULL, onlyThisPageIndexing || incremental);
+        return new PageIndexator(rootLink, crawlContext, this,
+                lemmasService, pageRepository, indexRepository, onlyThisPageIndexing);
+    }
+
+    private SiteCrawlContext newCrawlContext(SiteDto siteDto, int generation, String rootLink, CrawlMode mode,
+                                             boolean pagesKept) {
+        if (siteDto.getId() != null && generation == siteDto.getGeneration()) {
+            searchIndexEngine.invalidate(siteDto.getId());  // поколение, по которому идет поиск, меняется на месте
+        }
+        NearDuplicateIndex nearDuplicateIndex = new NearDuplicateIndex(configCrawler.getNearDuplicateDistance());
+        if (pagesKept) {  // сохраненные ранее страницы тоже считаются оригиналами
+            pageRepository.findAllSimHashesBySiteIdAndGeneration(siteDto.getId(), generation)
+                    .forEach(page -> nearDuplicateIndex.add(page.getId(), page.getSimHash()));
+        }
+        SiteCrawlContext crawlContext = new SiteCrawlContext(siteDto, generation, newHttpJsoupConnector(),
+                robotsTxtCache, sitemapSeeder, nearDuplicateIndex, siteStatusHeartbeat, indexGenerationManager,
+                rootLink, mode);
+        trackProgress(crawlContext);
+        return crawlContext;
+    }
+
+    /* Сохраняются только счетчики и статус обхода, контекст с очередью и кэшами сайта не удерживается */
+    private void trackProgress(SiteCrawlContext crawlContext) {
+        String siteUrl = crawlContext.getSiteUrl();
+        CrawlProgress crawlProgress = crawlContext.getCrawlProgress();
+        SiteIndexingState siteState = crawlContext.getSiteState();
+        lastCrawlProgress.put(siteUrl, () -> crawlProgress.snapshot(siteUrl, siteState.getStatus().name()));
+    }
+
+    private HttpJsoupConnector newHttpJsoupConnector() {
+        return new HttpJsoupConnector(hostFetchScheduler, httpClient, configCrawler.getResponseTimeout(),
+                new RetryPolicy(configCrawler.getRetry()));
     }
 
     private void stopSiteIndexing(Site siteToStop) {
+        Optional<SiteIndexingState> siteState = siteStatusHeartbeat.findBySiteId(siteToStop.getId());
+        if (siteState.isPresent()) {  // задачи сайта увидят остановку без обращения к БД
+            siteStatusHeartbeat.finish(siteState.get(), SiteStatus.FAILED, INDEXING_STOPPED_BY_USER_MESSAGE);
+            log.warn("[" + siteToStop.getUrl() + "] " + INDEXING_STOPPED_BY_USER_MESSAGE);
+            return;
+        }
         SiteDto siteDto = SiteMapper.INSTANCE.siteToSiteDto(siteToStop);
         siteDto.setFailed(INDEXING_STOPPED_BY_USER_MESSAGE);
         siteRepository.saveAndFlush(SiteMapper.INSTANCE.siteDtoToSite(siteDto));
@@ -157,22 +351,20 @@ public class IndexingServiceImpl implements IndexingService {
     }
 
     @Override
-    @Transactional
-    public int indexLemmas(IndexRepository indexRepository,
-                           List<Lemma> lemmasToIndex,
+    public int indexLemmas(Map<String, Integer> lemmaIdsToIndex,
                            Map<String, Integer> pageLemmasCount,
                            PageDto pageDto) {
         List<Index> indexToSaveList = new ArrayList<>();
-        for (Lemma lemma : lemmasToIndex) {
-            String lemmaValue = lemma.getLemma();
+        for (Map.Entry<String, Integer> lemma : lemmaIdsToIndex.entrySet()) {
+            String lemmaValue = lemma.getKey();
             if (!pageLemmasCount.containsKey(lemmaValue)) {
                 log.warn("Не удалось найти лемму \"" + lemmaValue + "\" в " + pageLemmasCount);
                 continue;
             }
             Integer lemmaCount = pageLemmasCount.get(lemmaValue);
-            indexToSaveList.add(new Index(null, pageDto.getId(), lemma.getId(), lemmaCount.floatValue()));
+            indexToSaveList.add(new Index(lemma.getValue(), pageDto.getId(), lemmaCount));
         }
-        return indexRepository.saveAllAndFlush(indexToSaveList).size();
+        return indexJdbcRepository.insertAll(indexToSaveList);  // пакетом, а не INSERT на каждую строку
     }
 
 }
@@ -0,0 +1,114 @@
+package searchengine.services.indexing.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.dto.indexing.SiteDto;
+import searchengine.mappers.SiteMapper;
+import searchengine.model.CrawlCheckpoint;
+import searchengine.model.Site;
+import searchengine.model.SiteStatus;
+import searchengine.repositories.CrawlCheckpointRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Контрольные точки обхода сайтов для продолжения индексации после остановки или падения приложения.
+ * <p>
+ * Периодически сохраняет ссылки из очереди обхода каждого сайта и id последней сохраненной страницы.
+ * Id берется до снимка очереди: ссылки страниц с меньшим id к этому моменту уже поставлены в очередь,
+ * а страницы, сохраненные позже, при продолжении загружаются повторно, чтобы заново найти их ссылки.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CrawlCheckpointManager {
+
+    static final String INDEXING_INTERRUPTED_MESSAGE = "Индексация прервана остановкой приложения";
+
+    private final CrawlCheckpointRepository crawlCheckpointRepository;
+    private final PageRepository pageRepository;
+    private final SiteRepository siteRepository;
+    private final Map<Integer, SiteCrawlContext> activeContexts = new ConcurrentHashMap<>();  // id сайта - обход
+
+    /**
+     * Добавляет обход сайта в список периодически сохраняемых, прежний обход того же сайта заменяется
+     * @param crawlContext общее состояние обхода сайта
+     */
+    public void register(SiteCrawlContext crawlContext) {
+        activeContexts.put(crawlContext.getSiteId(), crawlContext);
+    }
+
+    public Optional<CrawlCheckpoint> findBySiteId(int siteId) {
+        return crawlCheckpointRepository.findById(siteId);
+    }
+
+    public void deleteBySiteId(int siteId) {
+        if (crawlCheckpointRepository.existsById(siteId)) crawlCheckpointRepository.deleteById(siteId);
+    }
+
+    /**
+     * Сохраняет очереди всех идущих обходов, завершенные и остановленные обходы убирает из списка.
+     * Вызывается по расписанию и перед остановкой индексации пользователем
+     */
+    @Scheduled(fixedDelayString = "${crawler-settings.checkpoint-interval:30000}",
+            initialDelayString = "${crawler-settings.checkpoint-interval:30000}")
+    public void saveAll() {
+        activeContexts.values().forEach(this::saveOrComplete);
+    }
+
+    /* Сайты, оставшиеся в статусе INDEXING после падения приложения, можно продолжить через resumeIndexing */
+    @EventListener(ApplicationReadyEvent.class)
+    public void markInterruptedSites() {
+        List<Site> interruptedSites = siteRepository.findAllByStatus(SiteStatus.INDEXING);
+        interruptedSites.forEach(site -> {
+            SiteDto siteDto = SiteMapper.INSTANCE.siteToSiteDto(site);
+            siteDto.setFailed(INDEXING_INTERRUPTED_MESSAGE);
+            siteRepository.saveAndFlush(SiteMapper.INSTANCE.siteDtoToSite(siteDto));
+            log.warn("[" + site.getUrl() + "] " + INDEXING_INTERRUPTED_MESSAGE);
+        });
+    }
+
+    private void saveOrComplete(SiteCrawlContext crawlContext) {
+        try {
+            if (crawlContext.getCrawlProgress().isEmpty()) {
+                activeContexts.remove(crawlContext.getSiteId(), crawlContext);
+                boolean indexed = siteRepository.findById(crawlContext.getSiteId())
+                        .map(site -> site.getStatus() == SiteStatus.INDEXED)
+                        .orElse(true);
+                if (indexed) deleteBySiteId(crawlContext.getSiteId());  // остановленный обход можно продолжить
+                return;
+            }
+            // проверка до снимка: если обход уже остановлен, очередь больше не меняется и сохранение последнее
+            boolean stopped = !crawlContext.getSiteState().isIndexing();
+            save(crawlContext);
+            if (stopped) activeContexts.remove(crawlContext.getSiteId(), crawlContext);
+        } catch (RuntimeException e) {
+            log.error("[" + crawlContext.getSiteUrl() + "] не удалось сохранить контрольную точку обхода: " +
+                    e.getLocalizedMessage());
+        }
+    }
+
+    private void save(SiteCrawlContext crawlContext) {
+        Integer lastPageId = pageRepository.findMaxIdBySiteIdAndGeneration(crawlContext.getSiteId(),
+                crawlContext.getGeneration());  // строго до снимка очереди
+        List<String> pendingLinks = crawlContext.getCrawlProgress().getPendingLinks();
+        if (pendingLinks.isEmpty()) return;
+
+        CrawlCheckpoint checkpoint = new CrawlCheckpoint();
+        checkpoint.setSiteId(crawlContext.getSiteId());
+        checkpoint.setLastPageId(lastPageId);
+        checkpoint.setPendingLinks(pendingLinks);
+        crawlCheckpointRepository.save(checkpoint);
+        log.debug("[" + crawlContext.getSiteUrl() + "] сохранена контрольная точка обхода, ссылок в очереди: " +
+                pendingLinks.size());
+    }
+}
@@ -0,0 +1,31 @@
+package searchengine.services.indexing.utils;
+
+import java.util.List;
+
+/**
+ * Исполнитель задач обхода страниц сайтов
+ */
+public interface CrawlExecutor {
+
+    /**
+     * Метод запуска задачи обхода страницы, процесс не дожидается ее завершения
+     * @param task задача на обработку страницы
+     */
+    void submit(PageIndexator task);
+
+    /**
+     * Метод запуска задач в порядке списка (ссылки из sitemap упорядочены по lastmod)
+     * @param tasks задачи на обработку страниц
+     */
+    default void submitAll(List<PageIndexator> tasks) {
+        tasks.forEach(this::submit);
+    }
+
+    /**
+     * Метод прерывания всех запущенных задач
+     */
+    void shutdownNow();
+
+    boolean isShutdown();
+
+}
@@ -0,0 +1,10 @@
+package searchengine.services.indexing.utils;
+
+/**
+ * Режим обхода сайта
+ */
+public enum CrawlMode {
+    FULL,  // сайт очищается и обходится заново
+    INCREMENTAL,  // известные страницы запрашиваются условно, неизменные не переиндексируются
+    RESUME  // продолжение прерванного обхода с сохраненной контрольной точки
+}
@@ -0,0 +1,93 @@
+package searchengine.services.indexing.utils;
+
+import searchengine.dto.indexing.CrawlProgressDto;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Учет задач обхода сайта без блокировок.
+ * <p>
+ * Ссылки незавершенных задач хранятся в конкурентном множестве: добавление и удаление выполняются
+ * за O(1) без копирования, а пустое множество означает окончание обхода. Счетчики разбиты на ячейки
+ * ({@link LongAdder}), поэтому задачи разных потоков не конкурируют за одну переменную.</p>
+ */
+public class CrawlProgress {
+
+    private final Set<String> inFlightLinks = ConcurrentHashMap.newKeySet();  // ссылки незавершенных задач
+    private final LongAdder started = new LongAdder();  // задачи, начавшие загрузку страницы
+    private final LongAdder done = new LongAdder();  // успешно обработанные страницы
+    private final LongAdder failed = new LongAdder();  // страницы с ошибкой
+    private final long startTime = System.currentTimeMillis();  // (мс) время начала обхода
+
+    /**
+     * Учет новой задачи обхода
+     * @param link полная ссылка на страницу
+     */
+    public void register(String link) {
+        inFlightLinks.add(link);
+    }
+
+    /* Задача начала загрузку страницы */
+    public void markStarted() {
+        started.increment();
+    }
+
+    /**
+     * Завершение задачи, повторный вызов для той же ссылки ничего не меняет
+     * @param link полная ссылка на страницу
+     * @param success страница обработана без ошибок
+     * @return количество оставшихся задач сайта
+     */
+    public int complete(String link, boolean success) {
+        if (inFlightLinks.remove(link)) {
+            if (success) done.increment();
+            else failed.increment();
+        }
+        return inFlightLinks.size();
+    }
+
+    /* Сброс очереди при остановке или ошибке индексации сайта */
+    public void clear() {
+        inFlightLinks.clear();
+    }
+
+    public boolean isEmpty() {
+        return inFlightLinks.isEmpty();
+    }
+
+    /* Копия ссылок незавершенных задач для контрольной точки */
+    public List<String> getPendingLinks() {
+        return List.copyOf(inFlightLinks);
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Снимок прогресса для мониторинга, счетчики читаются без остановки обхода
+     * @param url адрес сайта
+     * @param status статус индексации сайта
+     */
+    public CrawlProgressDto snapshot(String url, String status) {
+        long doneCount = done.sum();
+        long failedCount = failed.sum();
+        long pending = inFlightLinks.size();
+        long active = Math.min(pending, Math.max(0, started.sum() - doneCount - failedCount));
+        long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+
+        CrawlProgressDto progressDto = new CrawlProgressDto();
+        progressDto.setUrl(url);
+        progressDto.setStatus(status);
+        progressDto.setQueued(pending - active);
+        progressDto.setActive(active);
+        progressDto.setDone(doneCount);
+        progressDto.setFailed(failedCount);
+        progressDto.setElapsed(elapsed);
+        progressDto.setPagesPerSecond((doneCount + failedCount) * 1_000.0 / elapsed);
+        return progressDto;
+    }
+}
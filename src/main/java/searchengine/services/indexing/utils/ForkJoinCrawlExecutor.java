@@ -0,0 +1,40 @@
+package searchengine.services.indexing.utils;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Исполнитель задач обхода на ForkJoinPool: дочерние задачи
+ * ставятся в локальную очередь потока через fork()
+ */
+public class ForkJoinCrawlExecutor implements CrawlExecutor {
+
+    private final ForkJoinPool fjp = new ForkJoinPool();
+
+    @Override
+    public void submit(PageIndexator task) {
+        if (ForkJoinTask.getPool() == fjp) task.fork();
+        else fjp.submit(task);
+    }
+
+    /* Локальная очередь потока - стек: задачи ставятся с конца, чтобы первой выполнялась первая задача списка */
+    @Override
+    public void submitAll(List<PageIndexator> tasks) {
+        if (ForkJoinTask.getPool() != fjp) {
+            tasks.forEach(fjp::submit);  // внешняя очередь пула - FIFO
+            return;
+        }
+        for (int i = tasks.size() - 1; i >= 0; i--) tasks.get(i).fork();
+    }
+
+    @Override
+    public void shutdownNow() {
+        fjp.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return fjp.isShutdown();
+    }
+}
@@ -0,0 +1,178 @@
+package searchengine.services.indexing.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.ConfigCrawler;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Планировщик "вежливых" запросов к сайтам.
+ * <p>
+ * Ограничения действуют отдельно для каждого хоста: минимальная пауза между началами
+ * запросов и максимальное количество одновременных запросов. Запросы к разным хостам
+ * друг друга не блокируют, поэтому сайты из конфига индексируются параллельно.</p>
+ * <p>
+ * Для каждого хоста работает автомат отключения: после серии неудачных запросов подряд
+ * (или ответа с Retry-After) новые запросы к хосту ждут окончания паузы. Каждое повторное
+ * срабатывание удваивает паузу до предела из настроек, успешный ответ сбрасывает счетчики.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HostFetchScheduler {
+
+    private final ConfigCrawler configCrawler;
+    private final Map<String, HostSlot> hostSlots = new ConcurrentHashMap<>();
+
+    /**
+     * Ожидает очереди на запрос к хосту ссылки
+     * @param link полная ссылка на страницу
+     * @return хост, который необходимо передать в {@link #release(String)} после запроса
+     * @throws InterruptedException если ожидание прервано
+     */
+    public String acquire(String link) throws InterruptedException {
+        String host = getHost(link);
+        ForkJoinPool.managedBlock(getSlot(host).newBlocker());  // пул может подключить компенсирующий поток
+        return host;
+    }
+
+    /**
+     * Увеличивает паузу между запросами к хосту, например по Crawl-delay из robots.txt.
+     * Пауза из настроек остается нижней границей
+     * @param host хост сайта
+     * @param delay (мс) требуемая пауза между началами запросов
+     */
+    public void setMinDelay(String host, long delay) {
+        HostSlot slot = getSlot(host);
+        long newDelay = Math.max(Math.max(configCrawler.getRequestDelay(), 0), delay);
+        if (slot.delay != newDelay) log.info("Пауза между запросами к " + host + " составляет " + newDelay + " мс");
+        slot.delay = newDelay;
+    }
+
+    /**
+     * Учитывает успешный ответ хоста и сбрасывает автомат отключения
+     * @param host хост, полученный из {@link #acquire(String)}
+     */
+    public void recordSuccess(String host) {
+        HostSlot slot = hostSlots.get(host);
+        if (slot == null || (slot.consecutiveFailures.get() == 0 && slot.openCount.get() == 0)) return;
+        slot.consecutiveFailures.set(0);
+        slot.openCount.set(0);
+    }
+
+    /**
+     * Учитывает неудачный запрос к хосту (ошибка сети, таймаут, 5xx, 429).
+     * При достижении порога ошибок подряд приостанавливает запросы к хосту
+     * @param host хост, полученный из {@link #acquire(String)}
+     * @param retryAfter (мс) пауза из заголовка Retry-After, 0 - не указана
+     */
+    public void recordFailure(String host, long retryAfter) {
+        HostSlot slot = getSlot(host);
+        ConfigCrawler.RetrySettings settings = configCrawler.getRetry();
+        if (retryAfter > 0) {  // сервер сам указал, когда повторить запрос
+            slot.pauseUntil(System.currentTimeMillis() + Math.min(retryAfter, settings.getMaxRetryAfter()));
+        }
+
+        int threshold = Math.max(settings.getFailureThreshold(), 1);
+        if (slot.consecutiveFailures.incrementAndGet() < threshold) return;
+
+        int openCount = slot.openCount.incrementAndGet();
+        long pause = Math.min(settings.getMaxPauseDuration(),
+                settings.getPauseDuration() << Math.min(openCount - 1, 20));
+        slot.pauseUntil(System.currentTimeMillis() + pause);
+        slot.consecutiveFailures.set(threshold - 1);  // следующая ошибка снова приостановит хост
+        log.warn("Запросы к " + host + " приостановлены на " + pause + " мс после " + threshold +
+                " ошибок подряд");
+    }
+
+    /**
+     * Освобождает место для следующего запроса к хосту
+     * @param host хост, полученный из {@link #acquire(String)}
+     */
+    public void release(String host) {
+        HostSlot slot = hostSlots.get(host);
+        if (slot != null) slot.inFlight.release();
+    }
+
+    private HostSlot getSlot(String host) {
+        return hostSlots.computeIfAbsent(host, key -> new HostSlot(
+                Math.max(configCrawler.getMaxInFlightPerHost(), 1),
+                Math.max(configCrawler.getRequestDelay(), 0)));
+    }
+
+    static String getHost(String link) {
+        try {
+            String host = URI.create(link).getHost();
+            if (host != null) return host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            log.debug("Не удалось определить хост ссылки " + link);
+        }
+        return link;
+    }
+
+    private static class HostSlot {
+
+        private final Semaphore inFlight;  // свободные места для одновременных запросов
+        private final AtomicLong nextStartTime = new AtomicLong();  // (мс) ближайшее разрешенное начало запроса
+        private volatile long delay;  // (мс) пауза между началами запросов
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();  // неудачные запросы подряд
+        private final AtomicInteger openCount = new AtomicInteger();  // срабатывания автомата подряд
+        private final AtomicLong pausedUntil = new AtomicLong();  // (мс) запросы приостановлены до этого времени
+
+        HostSlot(int maxInFlight, long delay) {
+            this.inFlight = new Semaphore(maxInFlight, true);
+            this.delay = delay;
+        }
+
+        /* Резервирует ближайшее свободное время начала запроса и возвращает его */
+        long reserveStartTime() {
+            while (true) {
+                long now = System.currentTimeMillis();
+                long next = nextStartTime.get();
+                long start = Math.max(now, next);
+                if (nextStartTime.compareAndSet(next, start + delay)) return start;
+            }
+        }
+
+        void pauseUntil(long time) {
+            pausedUntil.accumulateAndGet(time, Math::max);
+        }
+
+        ForkJoinPool.ManagedBlocker newBlocker() {
+            return new ForkJoinPool.ManagedBlocker() {
+                private boolean ready;
+
+                @Override
+                public boolean block() throws InterruptedException {
+                    inFlight.acquire();
+                    try {
+                        long startTime = reserveStartTime();
+                        long waitTime;  // пауза хоста может продлиться, пока поток ждет
+                        while ((waitTime = Math.max(startTime, pausedUntil.get()) - System.currentTimeMillis()) > 0) {
+                            Thread.sleep(waitTime);
+                        }
+                    } catch (InterruptedException e) {
+                        inFlight.release();
+                        throw e;
+                    }
+                    ready = true;
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return ready;
+                }
+            };
+        }
+    }
+}
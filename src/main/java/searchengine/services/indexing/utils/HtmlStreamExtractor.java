@@ -0,0 +1,143 @@
+package searchengine.services.indexing.utils;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import searchengine.dto.indexing.PageDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Потоковое извлечение видимого текста, заголовка и ссылок страницы за один проход.
+ * <p>
+ * Элементы обрабатываются по мере закрытия тегов и сразу удаляются из дерева,
+ * поэтому полный DOM страницы в памяти не строится и не сериализуется обратно в HTML.
+ * Текст, предшествующий закрытому элементу, выводится раньше него, так что порядок
+ * слов в тексте совпадает с порядком на странице.</p>
+ */
+public class HtmlStreamExtractor {
+
+    private static final Set<String> SKIPPED_TAGS = Set.of("script", "style", "noscript", "template", "svg");
+    private static final Pattern META_CHARSET =
+            Pattern.compile("<meta[^>]+charset\\s*=\\s*[\"']?([\\w-]+)", Pattern.CASE_INSENSITIVE);
+    private static final int CHARSET_SNIFF_LENGTH = 4 * 1024;  // (байт) начало документа для поиска meta charset
+
+    private final StringBuilder text = new StringBuilder();
+    private final List<String> links = new ArrayList<>();
+    private String title = "";
+    private boolean titleFound;
+
+    private HtmlStreamExtractor() {
+    }
+
+    /**
+     * Заполняет content (видимый текст), title и links страницы из тела ответа
+     * @param pageDto Dto загруженной страницы
+     * @param rawBody тело ответа
+     * @param link полная ссылка на страницу
+     */
+    public static void extractTo(PageDto pageDto, byte[] rawBody, String link) {
+        HtmlStreamExtractor extractor = new HtmlStreamExtractor();
+        Charset charset = detectCharset(rawBody, pageDto.getCharset());
+        try (StreamParser streamParser = new StreamParser(Parser.htmlParser())) {
+            streamParser.parse(new InputStreamReader(new ByteArrayInputStream(rawBody), charset), link);
+            Iterator<Element> elements = streamParser.iterator();
+            while (elements.hasNext()) extractor.accept(elements.next());
+        }
+        pageDto.setContent(extractor.text.toString());
+        pageDto.setTitle(extractor.title);
+        pageDto.setLinks(extractor.links);
+    }
+
+    /* Обработка закрытого элемента: все его дочерние элементы к этому моменту уже обработаны и удалены */
+    private void accept(Element element) {
+        boolean parentSkipped = isSkipped(element.parent());
+        flushPrecedingText(element, parentSkipped);
+        String tag = element.normalName();
+        if (parentSkipped || SKIPPED_TAGS.contains(tag)) {  // содержимое svg, script и т.п. - не текст страницы
+            if (element.parent() != null) element.remove();
+            return;
+        }
+        if (tag.equals("a") && element.hasAttr("href")) links.add(element.attr("href"));
+        if (tag.equals("title") && !titleFound && isHeadChild(element)) {  // только первый title документа
+            title = element.text().trim();
+            titleFound = true;
+        }
+        appendTextNodes(element.childNodes());
+        if (element.parent() != null) element.remove();
+    }
+
+    /* Текст родителя перед элементом выводится до текста самого элемента */
+    private void flushPrecedingText(Element element, boolean parentSkipped) {
+        Element parent = element.parent();
+        if (parent == null) return;
+        while (element.siblingIndex() > 0) {
+            Node preceding = parent.childNode(0);
+            if (!parentSkipped && preceding instanceof TextNode textNode) appendText(textNode.text());
+            preceding.remove();
+        }
+    }
+
+    /*
+     * Элемент или его предок пропускается. Элементы выдаются при закрытии, когда незакрытые предки
+     * еще в дереве, поэтому поддерево определяется по цепочке родителей (глубина документа невелика)
+     */
+    private static boolean isSkipped(Element element) {
+        for (Element current = element; current != null; current = current.parent()) {
+            if (SKIPPED_TAGS.contains(current.normalName())) return true;
+        }
+        return false;
+    }
+
+    private static boolean isHeadChild(Element element) {
+        Element parent = element.parent();
+        return parent != null && parent.normalName().equals("head");
+    }
+
+    private void appendTextNodes(List<Node> nodes) {
+        for (Node node : nodes) {
+            if (node instanceof TextNode textNode) appendText(textNode.text());
+        }
+    }
+
+    private void appendText(String value) {
+        String trimmed = value.strip();
+        if (trimmed.isEmpty()) return;
+        if (!text.isEmpty()) text.append(' ');
+        text.append(trimmed);
+    }
+
+    /* Кодировка из заголовка ответа, иначе по BOM или meta тегу, по умолчанию UTF-8 */
+    static Charset detectCharset(byte[] rawBody, String headerCharset) {
+        Charset charset = toCharset(headerCharset);
+        if (charset != null) return charset;
+        if (rawBody.length >= 3 && (rawBody[0] & 0xFF) == 0xEF && (rawBody[1] & 0xFF) == 0xBB
+                && (rawBody[2] & 0xFF) == 0xBF) return StandardCharsets.UTF_8;
+        String head = new String(rawBody, 0, Math.min(rawBody.length, CHARSET_SNIFF_LENGTH),
+                StandardCharsets.ISO_8859_1);
+        Matcher matcher = META_CHARSET.matcher(head);
+        if (matcher.find()) charset = toCharset(matcher.group(1));
+        return charset != null ? charset : StandardCharsets.UTF_8;
+    }
+
+    private static Charset toCharset(String name) {
+        if (name == null) return null;
+        try {
+            return Charset.forName(name.trim().toLowerCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,38 +1,74 @@
 package searchengine.services.indexing.utils;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Connection;
 import org.jsoup.HttpStatusException;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.springframework.http.HttpStatus;
 import searchengine.dto.indexing.PageDto;
+import searchengine.dto.indexing.PageRecrawlDto;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
 
 import static searchengine.services.indexing.utils.RetryUtils.withRetry;
 
+/**
+ * Загрузка страниц через общий пул соединений {@link HttpClient} и потоковый разбор HTML.
+ * <p>
+ * Тело ответа читается потоком и передается разбору сырыми байтами, не-HTML ответы не скачиваются.</p>
+ */
 @Slf4j
+@RequiredArgsConstructor
 public class HttpJsoupConnector {
 
-    static final int REQUEST_TIMEOUT = 1_000;  // (мс) таймаут перед запросами к ссылкам
+    static final int MAX_BODY_SIZE = 16 * 1024 * 1024;  // (байт) предел тела страницы (размер MEDIUMTEXT)
     static final String USER_AGENT = "SkillboxFinalTaskSearchBot";
     static final String REFERER = "http://www.google.com";
 
-    public synchronized PageDto getPageDtoFromLink(String link) throws InterruptedException {
+    private final HostFetchScheduler hostFetchScheduler;  // соблюдение пауз и лимитов запросов по хостам
+    private final HttpClient httpClient;  // общий клиент с пулом keep-alive соединений
+    private final long responseTimeout;  // (мс) таймаут получения ответа
+    private final RetryPolicy retryPolicy;  // повторы запросов с экспоненциальной паузой
+
+    public PageDto getPageDtoFromLink(String link) throws InterruptedException {
+        return getPageDtoFromLink(link, null);
+    }
+
+    /**
+     * Загрузка страницы, при наличии прошлой версии выполняется условный запрос
+     * @param link полная ссылка на страницу
+     * @param previousVersion заголовки прошлой загрузки страницы или null
+     * @return Dto страницы, код 304 означает, что страница не изменилась
+     * @throws InterruptedException если ожидание очереди запроса прервано
+     */
+    public PageDto getPageDtoFromLink(String link, PageRecrawlDto previousVersion) throws InterruptedException {
         PageDto pageDto = new PageDto();
         pageDto.setPath(link);
 
         try {
-            Thread.sleep(REQUEST_TIMEOUT);
+            withRetry(retryPolicy, () -> fetchOnce(pageDto, previousVersion));
         } catch (InterruptedException e) {
             log.warn("Сервис запросов к ссылкам прерван - " + e.getMessage());
             throw e;
-        }
-
-        try {
-            withRetry(3, REQUEST_TIMEOUT, () -> fillPageDto(pageDto));
-            pageDto.setCode(200);
         } catch (HttpStatusException e) {
             log.warn("[" + link + "] ошибка статуса страницы: " + e.getMessage());
             pageDto.setCode(e.getStatusCode());
@@ -43,22 +79,193 @@ public class HttpJsoupConnector {
         return pageDto;
     }
 
-    private Connection.Response executeByLink(String link) throws IOException {
-        return Jsoup.connect(link)
-                .userAgent(USER_AGENT)
-                .referrer(REFERER)
-                .execute();
+    /**
+     * Разбор загруженного тела страницы: заполняет видимый текст, заголовок и ссылки,
+     * освобождает сырые байты ответа
+     * @param pageDto Dto загруженной страницы
+     * @param link полная ссылка на страницу (для относительных ссылок)
+     */
+    public void parsePageDto(PageDto pageDto, String link) {
+        byte[] rawBody = pageDto.getRawBody();
+        if (rawBody == null) {
+            pageDto.setLinks(List.of());
+            return;
+        }
+        try {
+            HtmlStreamExtractor.extractTo(pageDto, rawBody, link);
+        } finally {
+            pageDto.setRawBody(null);
+        }
+    }
+
+    /**
+     * Загрузка служебного файла сайта (robots.txt, sitemap.xml) в общей очереди запросов к хосту
+     * @param link полная ссылка на файл
+     * @return тело ответа (распакованное для *.gz) или пустой Optional, если файл недоступен
+     * @throws InterruptedException если ожидание очереди запроса прервано
+     */
+    public Optional<byte[]> getResource(String link) throws InterruptedException {
+        Resource resource = fetchResource(link);
+        return resource.statusCode() == HttpStatus.OK.value() ? Optional.of(resource.body()) : Optional.empty();
+    }
+
+    /**
+     * Загрузка служебного файла с кодом ответа, без повторов
+     * @param link полная ссылка на файл
+     * @return код ответа и тело (только для 200), код 0 - сервер недоступен
+     * @throws InterruptedException если ожидание очереди хоста прервано
+     */
+    public Resource fetchResource(String link) throws InterruptedException {
+        String host = hostFetchScheduler.acquire(link);
+        try {
+            HttpRequest request = newRequestBuilder(link).header("Accept", "*/*").build();
+            HttpResponse<InputStream> response = execute(request);
+            try (InputStream body = response.body()) {
+                if (response.statusCode() != HttpStatus.OK.value()) return new Resource(response.statusCode(), null);
+                byte[] data = readBody(body, response.headers());
+                return new Resource(response.statusCode(), isGzip(data) ? gunzip(data) : data);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("[" + link + "] не удалось загрузить файл: " + e.getMessage());
+            return new Resource(0, null);
+        } finally {
+            hostFetchScheduler.release(host);
+        }
+    }
+
+    /* Одна попытка загрузки: место в очереди хоста не удерживается во время паузы между повторами */
+    private void fetchOnce(PageDto pageDto, PageRecrawlDto previousVersion) throws Exception {
+        String host = hostFetchScheduler.acquire(pageDto.getPath());
+        try {
+            fillPageDto(pageDto, previousVersion);
+            hostFetchScheduler.recordSuccess(host);
+        } catch (IOException e) {
+            if (retryPolicy.isRetryable(e)) hostFetchScheduler.recordFailure(host, RetryPolicy.getRetryAfter(e));
+            throw e;
+        } finally {
+            hostFetchScheduler.release(host);
+        }
+    }
+
+    private HttpRequest.Builder newRequestBuilder(String link) {
+        return HttpRequest.newBuilder(toRequestUri(link))
+                .timeout(Duration.ofMillis(responseTimeout))
+                .header("User-Agent", USER_AGENT)
+                .header("Referer", REFERER)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+    }
+
+    private HttpRequest buildRequest(String link, PageRecrawlDto previousVersion) {
+        HttpRequest.Builder builder = newRequestBuilder(link)
+                .header("Accept", "text/html,application/xhtml+xml;q=0.9,*/*;q=0.8");
+        if (previousVersion != null && previousVersion.getEtag() != null) {
+            builder.header("If-None-Match", previousVersion.getEtag());
+        }
+        if (previousVersion != null && previousVersion.getLastModified() != null) {
+            builder.header("If-Modified-Since", previousVersion.getLastModified());
+        }
+        return builder.build();
+    }
+
+    /* Асинхронный запрос, ожидание которого можно прервать остановкой индексации */
+    private HttpResponse<InputStream> execute(HttpRequest request) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<InputStream>> future =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) throw ioException;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void fillPageDto(PageDto pageDto, PageRecrawlDto previousVersion) throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = execute(buildRequest(pageDto.getPath(), previousVersion));
+        try (InputStream body = response.body()) {
+            int statusCode = response.statusCode();
+            if (statusCode >= HttpStatus.INTERNAL_SERVER_ERROR.value()
+                    || statusCode == HttpStatus.TOO_MANY_REQUESTS.value()) {  // запрашиваются повторно
+                long retryAfter = RetryPolicy.parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null));
+                throw new RetryableStatusException(statusCode, pageDto.getPath(), retryAfter);
+            }
+            pageDto.setCode(statusCode);  // 304 при неизменной странице
+            if (statusCode != HttpStatus.OK.value()) return;
+
+            HttpHeaders headers = response.headers();
+            pageDto.setEtag(headers.firstValue("ETag").orElse(null));
+            pageDto.setLastModified(headers.firstValue("Last-Modified").orElse(null));
+
+            String contentType = headers.firstValue("Content-Type").orElse(null);
+            if (contentType == null || !contentType.startsWith("text/html")) return;  // тело не скачивается
+
+            log.info("Выполняется HTTP запрос к url = ".concat(pageDto.getPath()));
+
+            byte[] rawBody = readBody(body, headers);
+            pageDto.setRawBody(rawBody);  // разбор выполняется отдельным этапом конвейера
+            pageDto.setCharset(getCharset(contentType));
+            pageDto.setContentHash(sha256Hex(rawBody));
+        }
     }
 
-    private void fillPageDto(PageDto pageDto) throws IOException {
-        Connection.Response response = executeByLink(pageDto.getPath());
+    private static byte[] readBody(InputStream body, HttpHeaders headers) throws IOException {
+        boolean gzipped = headers.firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        InputStream stream = gzipped ? new GZIPInputStream(body) : body;
+        return stream.readNBytes(MAX_BODY_SIZE);
+    }
 
-        if (response.contentType() == null || !response.contentType().startsWith("text/html")) return;
+    /* Файлы sitemap.xml.gz отдаются без Content-Encoding, поэтому сжатие определяется по сигнатуре */
+    private static boolean isGzip(byte[] data) {
+        return data.length > 2 && (data[0] & 0xFF) == 0x1F && (data[1] & 0xFF) == 0x8B;
+    }
 
-        log.info("Выполняется HTTP запрос к url = ".concat(pageDto.getPath()));
+    private static byte[] gunzip(byte[] data) throws IOException {
+        try (InputStream stream = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return stream.readNBytes(MAX_BODY_SIZE);
+        }
+    }
+
+    /* Кодировка из Content-Type, иначе null - она определится по BOM или meta тегу */
+    private static String getCharset(String contentType) {
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                String charset = trimmed.substring("charset=".length()).replace("\"", "").trim();
+                return charset.isEmpty() ? null : charset;
+            }
+        }
+        return null;
+    }
+
+    /* Ссылки с кириллицей или пробелами в пути кодируются перед запросом */
+    private static URI toRequestUri(String link) {
+        try {
+            return URI.create(link);
+        } catch (IllegalArgumentException e) {
+            try {
+                URL url = new URL(link);
+                URI uri = new URI(url.getProtocol(), url.getUserInfo(), url.getHost(), url.getPort(),
+                        url.getPath(), url.getQuery(), url.getRef());
+                return URI.create(uri.toASCIIString());
+            } catch (MalformedURLException | URISyntaxException ex) {
+                throw new IllegalArgumentException("Некорректная ссылка " + link, ex);
+            }
+        }
+    }
+
+    private static String sha256Hex(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-        Document doc = response.parse();
-        pageDto.setContent(doc.html());
-        pageDto.setLinks(doc.select("a"));
+    public record Resource(int statusCode, byte[] body) {
     }
 }
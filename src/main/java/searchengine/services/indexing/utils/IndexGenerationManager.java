@@ -0,0 +1,132 @@
+package searchengine.services.indexing.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.config.ConfigCrawler;
+import searchengine.dto.indexing.SiteDto;
+import searchengine.dto.indexing.SiteGenerationDto;
+import searchengine.model.Site;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.searching.index.SearchIndexEngine;
+
+import java.util.*;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Поколения индекса сайтов: страницы и леммы сайта помечены номером поколения.
+ * <p>
+ * Полный обход пишет в новое поколение (site.build_generation), а поиск продолжает работать по последнему
+ * завершенному (site.generation). После окончания обхода поколения переключаются одним UPDATE строки сайта.
+ * Поколения, на которые больше не ссылается ни один сайт, удаляются по расписанию небольшими порциями,
+ * чтобы каскадное удаление индексов не превращалось в одну большую транзакцию.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexGenerationManager {
+
+    private final ConfigCrawler configCrawler;
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final SearchIndexEngine searchIndexEngine;  // сегменты обратного индекса для поиска
+
+    /**
+     * Номер поколения для нового полного обхода, больше всех поколений сайта в БД,
+     * в том числе еще не удаленных
+     * @param siteDto сайт из БД или новый сайт без id
+     */
+    public int nextGeneration(SiteDto siteDto) {
+        int maxGeneration = siteDto.getGeneration();
+        if (siteDto.getBuildGeneration() != null) maxGeneration = Math.max(maxGeneration, siteDto.getBuildGeneration());
+        if (siteDto.getId() != null) {
+            maxGeneration = Math.max(maxGeneration, pageRepository.findMaxGenerationBySiteId(siteDto.getId()));
+            maxGeneration = Math.max(maxGeneration, lemmaRepository.findMaxGenerationBySiteId(siteDto.getId()));
+        }
+        return maxGeneration + 1;
+    }
+
+    /**
+     * Результат успешно завершенного обхода становится доступен поиску: новое поколение переключается,
+     * сегмент обратного индекса сайта перестраивается
+     * @param siteId id сайта
+     * @param generation поколение, в которое писал обход
+     * @param newGeneration обход заполнял новое поколение
+     */
+    public void publish(int siteId, int generation, boolean newGeneration) {
+        if (newGeneration && !activate(siteId, generation)) return;
+        searchIndexEngine.rebuild(siteId, generation);
+    }
+
+    /**
+     * Переключение поиска на поколение, заполненное полным обходом
+     * @param siteId id сайта
+     * @param generation заполненное поколение
+     * @return true, если поколение стало текущим
+     */
+    public boolean activate(int siteId, int generation) {
+        try {
+            if (siteRepository.activateGeneration(siteId, generation) > 0) {
+                log.info("Поиск по сайту id=" + siteId + " переключен на поколение индекса " + generation);
+                return true;
+            }
+            log.warn("Поколение индекса " + generation + " сайта id=" + siteId + " уже не заполняется обходом");
+        } catch (RuntimeException e) {
+            log.error("Не удалось переключить поколение индекса сайта id=" + siteId + ": " + e.getLocalizedMessage());
+        }
+        return false;
+    }
+
+    @Scheduled(fixedDelayString = "${crawler-settings.generation-cleanup-interval:60000}",
+            initialDelayString = "${crawler-settings.generation-cleanup-interval:60000}")
+    public void dropStaleGenerations() {
+        try {
+            // поколения читаются до сайтов: новое поколение появляется в site раньше, чем в page и lemma
+            List<SiteGenerationDto> pageGenerations = pageRepository.findAllSiteGenerations();
+            List<SiteGenerationDto> lemmaGenerations = lemmaRepository.findAllSiteGenerations();
+            Map<Integer, Site> sites = siteRepository.findAll().stream()
+                    .collect(Collectors.toMap(Site::getId, site -> site));
+
+            for (SiteGenerationDto stale : filterStale(pageGenerations, sites)) {
+                deleteInBatches(() -> pageRepository.deleteBySiteIdAndGeneration(stale.getSiteId(),
+                        stale.getGeneration(), getBatchSize()), "страниц", stale);
+            }
+            for (SiteGenerationDto stale : filterStale(lemmaGenerations, sites)) {  // индексов лемм уже нет
+                deleteInBatches(() -> lemmaRepository.deleteBySiteIdAndGeneration(stale.getSiteId(),
+                        stale.getGeneration(), getBatchSize()), "лемм", stale);
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось удалить устаревшие поколения индекса: " + e.getLocalizedMessage());
+        }
+    }
+
+    private static List<SiteGenerationDto> filterStale(List<SiteGenerationDto> generations, Map<Integer, Site> sites) {
+        return generations.stream()
+                .filter(dto -> {
+                    Site site = sites.get(dto.getSiteId());
+                    return site != null && site.getGeneration() != dto.getGeneration() &&
+                            !dto.getGeneration().equals(site.getBuildGeneration());
+                })
+                .toList();
+    }
+
+    private void deleteInBatches(IntSupplier deleteBatch, String what, SiteGenerationDto stale) {
+        long total = 0;
+        int deleted;
+        do {
+            deleted = deleteBatch.getAsInt();  // каждая порция - отдельная транзакция
+            total += deleted;
+        } while (deleted > 0);
+        log.info("Удалено " + total + " " + what + " поколения " + stale.getGeneration() +
+                " сайта id=" + stale.getSiteId());
+    }
+
+    private int getBatchSize() {
+        return Math.max(configCrawler.getGenerationDeleteBatchSize(), 1);
+    }
+}
@@ -0,0 +1,83 @@
+package searchengine.services.indexing.utils;
+
+/**
+ * Компактный потокобезопасный набор примитивных long значений
+ * с открытой адресацией (без упаковки в Long и узлов коллекций).
+ */
+public class LongHashSet {
+
+    private static final int DEFAULT_CAPACITY = 1 << 10;
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final long EMPTY = 0L;  // ноль хранится отдельным флагом
+
+    private long[] table;
+    private int size;
+    private boolean containsEmpty;
+
+    public LongHashSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max((int) (expectedSize / LOAD_FACTOR), 2) - 1) << 1;
+        table = new long[capacity];
+    }
+
+    /**
+     * @param value добавляемое значение
+     * @return true, если значения еще не было в наборе
+     */
+    public synchronized boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty) return false;
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        if (size + 1 > table.length * LOAD_FACTOR) rehash(table.length << 1);
+        if (!insert(table, value)) return false;
+        size++;
+        return true;
+    }
+
+    public synchronized boolean contains(long value) {
+        if (value == EMPTY) return containsEmpty;
+        int mask = table.length - 1;
+        for (int i = mix(value) & mask; ; i = (i + 1) & mask) {
+            long current = table[i];
+            if (current == EMPTY) return false;
+            if (current == value) return true;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private static boolean insert(long[] table, long value) {
+        int mask = table.length - 1;
+        for (int i = mix(value) & mask; ; i = (i + 1) & mask) {
+            long current = table[i];
+            if (current == value) return false;
+            if (current == EMPTY) {
+                table[i] = value;
+                return true;
+            }
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] newTable = new long[newCapacity];
+        for (long value : table) {
+            if (value != EMPTY) insert(newTable, value);
+        }
+        table = newTable;
+    }
+
+    private static int mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+}
@@ -0,0 +1,79 @@
+package searchengine.services.indexing.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Индекс отпечатков SimHash страниц сайта для поиска почти одинаковых страниц.
+ * <p>
+ * Отпечаток делится на 4 блока по 16 бит. Если отпечатки отличаются не более чем в 3 битах,
+ * хотя бы один блок у них совпадает, поэтому сравниваются только страницы из общих корзин блоков,
+ * а не все страницы сайта.</p>
+ */
+public class NearDuplicateIndex {
+
+    static final int BANDS = 4;
+    static final int BAND_BITS = Long.SIZE / BANDS;
+    static final int MAX_DISTANCE = BANDS - 1;  // больший порог не гарантирует совпадения блока
+
+    private final int maxDistance;  // (бит) порог расстояния Хэмминга, < 0 - поиск отключен
+    private final Map<Integer, List<Integer>> bandBuckets = new HashMap<>();  // блок -> id страниц
+    private final Map<Integer, Long> pageFingerprints = new HashMap<>();  // id страницы -> отпечаток
+
+    public NearDuplicateIndex(int maxDistance) {
+        this.maxDistance = Math.min(maxDistance, MAX_DISTANCE);
+    }
+
+    /**
+     * Поиск ранее добавленной страницы с близким отпечатком. Если такой нет, страница добавляется
+     * как оригинал: поиск и добавление атомарны, поэтому из двух одновременно записываемых
+     * почти одинаковых страниц оригиналом станет только одна
+     * @param pageId id проверяемой страницы
+     * @param simHash отпечаток проверяемой страницы
+     * @return id найденной страницы или null, если страница добавлена
+     */
+    public synchronized Integer findDuplicateOrAdd(int pageId, long simHash) {
+        if (maxDistance < 0) return null;
+        Integer duplicateOf = findDuplicate(simHash);
+        if (duplicateOf == null) add(pageId, simHash);
+        return duplicateOf;
+    }
+
+    public synchronized void add(int pageId, long simHash) {
+        if (maxDistance < 0 || pageFingerprints.putIfAbsent(pageId, simHash) != null) return;
+        for (int band = 0; band < BANDS; band++) {
+            bandBuckets.computeIfAbsent(bandKey(simHash, band), key -> new ArrayList<>(1)).add(pageId);
+        }
+    }
+
+    /* Удаление заменяемой при обновлении версии страницы */
+    public synchronized void remove(int pageId) {
+        Long simHash = pageFingerprints.remove(pageId);
+        if (simHash == null) return;
+        for (int band = 0; band < BANDS; band++) {
+            int key = bandKey(simHash, band);
+            List<Integer> bucket = bandBuckets.get(key);
+            if (bucket == null) continue;
+            bucket.remove(Integer.valueOf(pageId));
+            if (bucket.isEmpty()) bandBuckets.remove(key);
+        }
+    }
+
+    private Integer findDuplicate(long simHash) {
+        for (int band = 0; band < BANDS; band++) {
+            List<Integer> bucket = bandBuckets.get(bandKey(simHash, band));
+            if (bucket == null) continue;
+            for (Integer pageId : bucket) {
+                if (SimHash.distance(pageFingerprints.get(pageId), simHash) <= maxDistance) return pageId;
+            }
+        }
+        return null;
+    }
+
+    private static int bandKey(long simHash, int band) {
+        int bandValue = (int) (simHash >>> (band * BAND_BITS)) & 0xFFFF;
+        return band << BAND_BITS | bandValue;
+    }
+}
@@ -2,8 +2,6 @@ package searchengine.services.indexing.utils;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.nodes.*;
-import org.jsoup.select.Elements;
 import org.springframework.http.HttpStatus;
 import searchengine.dto.indexing.*;
 import searchengine.mappers.SiteMapper;
@@ -14,7 +12,6 @@ import searchengine.repositories.*;
 
 import java.util.*;
 import java.util.concurrent.CancellationException;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.RecursiveTask;
 import java.util.stream.Collectors;
@@ -24,265 +21,277 @@ public class PageIndexator extends RecursiveTask<CopyOnWriteArraySet<String>> {
 
     private static final String processStartedMessage = "Выполняется обработка страницы %s";
     private static final String processFinishedMessage = "Закончена обработка страницы %s";
-    private static final String siteNotFoundMessage = "Сайт не найден в БД! %s";
     private static final String mainPageNotAvailableMessage = "Главная страница сайта %s не отвечает!";
-    private static final String siteIndexationFinishedMessage = "Закончена индексация сайта с url=%s";
+    private static final String siteIndexationFinishedMessage = "Закончена индексация сайта с url=%s за %d мс";
     private static final String taskCancellationMessage = "Выполнение дочерних PageIndexator задач прервано! %s";
     private static final String taskProcessingErrorMessage = "При выполнении задачи произошла ошибка: %s";
+    private static final String pageNotChangedMessage = "Страница %s не изменилась с прошлой индексации";
+    private static final String pageDisallowedMessage = "Страница %s запрещена для обхода в robots.txt";
+    private static final String pageDuplicateMessage = "Страница %s - почти дубликат страницы id=%d, не индексируется";
 
     @Getter public final String currentLink;  // текущая полная ссылка
     private final IndexingService indexingService;  // сервис индексации
     private final LemmasService lemmasService;  // сервис лемматизации
-    private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final IndexRepository indexRepository;
+    @Getter private final SiteCrawlContext crawlContext;  // общее состояние обхода сайта
     private final HttpJsoupConnector httpJsoupConnector;  // сервис запросов к сайту
-    private final CopyOnWriteArrayList<PageIndexator> siteTaskList;  // для отслеживания оставшихся задач по сайту
+    private final CrawlProgress crawlProgress;  // для отслеживания оставшихся задач по сайту
     private final boolean onlyThisPageIndex;  // флаг для индексации/обновления одной конкретной страницы
 
-    private SiteDto siteDto;  // инфо сайта
-    private List<PageIndexator> nextTasks;  // для запуска оставшихся задач
+    private final SiteDto siteDto;  // инфо сайта
+    private PageDto pageDto;  // загруженная страница, передаваемая между этапами конвейера
+    private PageRecrawlDto previousVersion;  // ранее сохраненная версия страницы (при обновлении)
+    private RobotsRules robotsRules = RobotsRules.ALLOW_ALL;  // правила robots.txt сайта
+    private Map<String, Integer> foundLemmas = Map.of();  // леммы страницы и их количество
 
     /* Общий конструктор для потомков и корня сайта */
-    public PageIndexator(SiteDto siteDto, String currentLink, HttpJsoupConnector httpJsoupConnector,
-                         CopyOnWriteArrayList<PageIndexator> siteTaskList,
+    public PageIndexator(String currentLink, SiteCrawlContext crawlContext,
                          IndexingService indexingService, LemmasService lemmasService,
-                         SiteRepository siteRepository, PageRepository pageRepository, IndexRepository indexRepository,
+                         PageRepository pageRepository, IndexRepository indexRepository,
                          boolean onlyThisPageIndex) {
-        this.siteRepository = siteRepository;
         this.pageRepository = pageRepository;
         this.indexRepository = indexRepository;
-        this.siteDto = new SiteDto();
-        this.siteDto.setId(siteDto.getId());
-        this.siteTaskList = siteTaskList;
-        siteTaskList.add(this);
+        this.crawlContext = crawlContext;
+        this.siteDto = crawlContext.getSiteState().toSiteDto();
         this.currentLink = currentLink;
-        this.httpJsoupConnector = httpJsoupConnector;
+        this.crawlProgress = crawlContext.getCrawlProgress();
+        crawlProgress.register(currentLink);
+        this.httpJsoupConnector = crawlContext.getHttpJsoupConnector();
         this.indexingService = indexingService;
         this.lemmasService = lemmasService;
         this.onlyThisPageIndex = onlyThisPageIndex;
     }
 
-    /* Конструктор для корня индексации */
-    public PageIndexator(SiteDto siteDto, String currentLink,
-                         IndexingService indexingService, LemmasService lemmasService,
-                         SiteRepository siteRepository, PageRepository pageRepository, IndexRepository indexRepository,
-                         boolean onlyThisPageIndex) {
-        this(siteDto, currentLink, new HttpJsoupConnector(), new CopyOnWriteArrayList<>(),
-                indexingService, lemmasService, siteRepository, pageRepository, indexRepository, onlyThisPageIndex);
-    }
-
     @Override
     protected CopyOnWriteArraySet<String> compute() {
         try {
-            startIndexingProcess();
-            if (nextTasks != null) nextTasks.forEach(PageIndexator::fork);
+            fetch();
         } catch (CancellationException e) {
             log.warn("[" + currentLink + "] " + taskCancellationMessage.formatted(e.getLocalizedMessage()));
         } catch (RuntimeException e) {
-            log.error("[" + currentLink + "] " + taskProcessingErrorMessage.formatted(e.getLocalizedMessage()));
+            finishWithError(e);
         }
         return new CopyOnWriteArraySet<>();
     }
 
-    private Set<String> startIndexingProcess() {
+    /* Этап загрузки страницы, выполняется исполнителем задач обхода */
+    private void fetch() {
         log.info(processStartedMessage.formatted(currentLink));
+        crawlProgress.markStarted();
 
-        updateSiteDto();
-        if (isSiteFail()) return exitByStatus(SiteStatus.FAILED, null);
+        if (isSiteFail()) {
+            exitByStatus(SiteStatus.FAILED, null);
+            return;
+        }
 
         String relativePath = currentLink.substring(siteDto.getUrl().length());
         relativePath = relativePath.isEmpty() ? "/" : relativePath;
-        Optional<Page> optionalPage = findExistingPage(relativePath);
 
-        if (optionalPage.isPresent() && !onlyThisPageIndex) return exitByStatus(SiteStatus.INDEXING, null);
-        else if (optionalPage.isPresent()) {
-            handlePreviousLemmas(optionalPage.get());
-            removePageFromRepository(relativePath, SiteMapper.INSTANCE.siteDtoToSite(siteDto));
+        if (onlyThisPageIndex || crawlContext.isKeepingPages()) {  // полный обход пишет в пустое новое поколение
+            previousVersion = pageRepository.findOneRecrawlInfoBySiteIdAndGenerationAndPath(siteDto.getId(),
+                    crawlContext.getGeneration(), relativePath).orElse(null);
         }
 
-        PageDto pageDto;
         try {
-            pageDto = httpJsoupConnector  // прерывание по времени на HttpJsoupConnectorService.REQUEST_TIMEOUT (мс)
-                    .getPageDtoFromLink(currentLink);
+            if (!onlyThisPageIndex) {  // страница, указанная пользователем, индексируется без проверки robots.txt
+                robotsRules = crawlContext.getRobotsRules();
+                if (!robotsRules.isAllowed(currentLink)) {
+                    log.info(pageDisallowedMessage.formatted(currentLink));
+                    exitByStatus(SiteStatus.INDEXED, null);
+                    return;
+                }
+                if (currentLink.equals(crawlContext.getRootLink())) seedFromSitemaps();
+            }
+            pageDto = httpJsoupConnector  // ожидание очереди запроса к хосту в HostFetchScheduler
+                    .getPageDtoFromLink(currentLink, crawlContext.isIncremental() ? previousVersion : null);
         } catch (InterruptedException e) {
             log.warn(e.getLocalizedMessage());
-            return exitByStatus(SiteStatus.FAILED, IndexingService.INDEXING_STOPPED_BY_USER_MESSAGE);
+            exitByStatus(SiteStatus.FAILED, IndexingService.INDEXING_STOPPED_BY_USER_MESSAGE);
+            return;
         }
+        pageDto.setPath(relativePath);
 
-        updateSiteDto();
-        if (isSiteFail()) return exitByStatus(SiteStatus.FAILED, null);
+        if (previousVersion != null && pageDto.getCode() == HttpStatus.NOT_MODIFIED.value()) {
+            log.info(pageNotChangedMessage.formatted(currentLink));
+            exitByStatus(SiteStatus.INDEXED, null);
+            return;
+        }
+
+        PageIndexingPipeline pipeline = crawlContext.getPipeline();
+        if (pageDto.getCode() == HttpStatus.OK.value()) pipeline.submitToParse(this);
+        else pipeline.submitToPersist(this);  // страницы с ошибкой только сохраняются
+    }
+
+    /* Этап разбора HTML: поиск ссылок и запуск задач обхода по ним */
+    void parse() {
+        httpJsoupConnector.parsePageDto(pageDto, currentLink);
+        if (!onlyThisPageIndex) prepareNextTasks(pageDto).forEach(crawlContext.getCrawlExecutor()::submit);
+        pageDto.setLinks(null);  // DOM страницы дальше не нужен
+        crawlContext.getPipeline().submitToLemmatize(this);
+    }
+
+    /* Этап лемматизации текста страницы */
+    void lemmatize() {
+        if (!isContentUnchanged()) {
+            foundLemmas = lemmasService.collectLemmas(pageDto.getContent());
+            pageDto.setSimHash(SimHash.compute(foundLemmas));
+        }
+        crawlContext.getPipeline().submitToPersist(this);
+    }
+
+    /* Этап записи страницы, лемм и индексов в БД */
+    void persist() {
+        if (isSiteFail()) {
+            exitByStatus(SiteStatus.FAILED, null);
+            return;
+        }
+
+        if (isContentUnchanged()) {  // леммы и индексы прошлой версии остаются без изменений
+            log.info(pageNotChangedMessage.formatted(currentLink));
+            pageRepository.updateValidatorsById(previousVersion.getId(), pageDto.getEtag(), pageDto.getLastModified());
+            exitByStatus(SiteStatus.INDEXED, null);
+            return;
+        }
+        if (previousVersion != null) removePreviousVersion(previousVersion.getId());
 
-        pageDto.setPath(relativePath);
         saveAndUpdatePageDto(pageDto);
 
         if (pageDto.getCode() != HttpStatus.OK.value()) {
             if (pageDto.getPath().equals("/")) {
-                return exitByStatus(SiteStatus.FAILED, mainPageNotAvailableMessage.formatted(siteDto.getUrl()));
+                exitByStatus(SiteStatus.FAILED, mainPageNotAvailableMessage.formatted(siteDto.getUrl()));
+                return;
+            }
+            exitByStatus(SiteStatus.INDEXING, null);
+            return;
+        }
+        if (pageDto.getSimHash() != null) {
+            Integer duplicateOf = crawlContext.getNearDuplicateIndex()
+                    .findDuplicateOrAdd(pageDto.getId(), pageDto.getSimHash());
+            if (duplicateOf != null) {  // копия уже проиндексированной страницы: леммы и индексы не пишутся
+                pageDto.setDuplicateOf(duplicateOf);
+                pageRepository.updateDuplicateOfById(pageDto.getId(), duplicateOf);
+                log.info(pageDuplicateMessage.formatted(currentLink, duplicateOf));
+                exitByStatus(SiteStatus.INDEXED, null);
+                return;
             }
-            return exitByStatus(SiteStatus.INDEXING, null);
         }
-        if (pageDto.getCode() < HttpStatus.BAD_REQUEST.value()) indexPage(pageDto);  // индексируются только коды < 400
-        if (!onlyThisPageIndex) nextTasks = prepareNextTasks(pageDto);
-        return exitByStatus(SiteStatus.INDEXED, null);
+        indexPage(pageDto);
+        exitByStatus(SiteStatus.INDEXED, null);
     }
 
-    private void updateSiteDto() {
-        if (siteDto == null) {
-            log.error(siteNotFoundMessage.formatted("[" + currentLink + "]"));
-            return;
-        }
+    /* Завершение задачи при ошибке на любом из этапов */
+    void finishWithError(RuntimeException e) {
+        log.error("[" + currentLink + "] " + taskProcessingErrorMessage.formatted(e.getLocalizedMessage()));
         try {
-            Site site = siteRepository.findById(siteDto.getId())
-                    .orElseThrow();
-            siteDto = SiteMapper.INSTANCE.siteToSiteDto(site);
-        } catch (NoSuchElementException e) {
-            siteDto = null;
+            exitByStatus(SiteStatus.INDEXING, null);
+        } catch (RuntimeException exitException) {
+            crawlProgress.complete(currentLink, false);
+            log.error("[" + currentLink + "] " + taskProcessingErrorMessage.formatted(exitException.getLocalizedMessage()));
         }
     }
 
+    /* Статус берется из памяти: индексация остановлена пользователем или завершилась ошибкой */
     private boolean isSiteFail() {
-        return siteDto == null ||
-                siteDto.getId() == null ||
-                siteDto.getStatus() != SiteStatus.INDEXING;
+        return !crawlContext.getSiteState().isIndexing();
     }
 
-    private Set<String> exitByStatus(SiteStatus preferredStatus, String errorText) {
-        siteTaskList.removeIf(task -> task.getCurrentLink().equals(currentLink));
-        int count = siteTaskList.size();
+    private void exitByStatus(SiteStatus preferredStatus, String errorText) {
+        int count = crawlProgress.complete(currentLink, preferredStatus == SiteStatus.INDEXED);
+        SiteIndexingState siteState = crawlContext.getSiteState();
 
-        updateSiteDto();
-        if (siteDto == null) return new HashSet<>();
-
-        switch (siteDto.getStatus()) {
-            case FAILED -> {
-                preferredStatus = SiteStatus.FAILED;
-                errorText = null;
-            }
-            case INDEXING, INDEXED -> {
-                if (preferredStatus != SiteStatus.FAILED && count > 0) {
-                    preferredStatus = SiteStatus.INDEXING;
-                    log.info(processFinishedMessage.formatted(currentLink) +
-                            ", осталось активных задач по сайту: " + count);
-                } else if (preferredStatus != SiteStatus.FAILED) {
-                    preferredStatus = SiteStatus.INDEXED;
-                    log.info(siteIndexationFinishedMessage.formatted(siteDto.getUrl()));
-                }
+        if (siteState.getStatus() == SiteStatus.FAILED || preferredStatus == SiteStatus.FAILED) {
+            if (crawlContext.finishSite(SiteStatus.FAILED, errorText)) {
+                if (errorText != null && !errorText.isEmpty()) log.error(errorText + " [" + currentLink + "]");
+                lemmasService.flushLemmasFrequency(siteDto.getId(), crawlContext.getGeneration(), false);
             }
+            crawlProgress.clear();
+            return;
         }
-
-        switch (preferredStatus) {
-            case FAILED -> {
-                siteDto.setFailed(errorText);
-                if (errorText!= null && !errorText.isEmpty()) log.error(errorText + " [" + currentLink + "]");
-            }
-            case INDEXED -> siteDto.setIndexed();
-            case INDEXING -> siteDto.updateStatusTime();
+        if (count > 0) {
+            siteState.touch();  // status_time запишет SiteStatusHeartbeat
+            log.info(processFinishedMessage.formatted(currentLink) +
+                    ", осталось активных задач по сайту: " + count);
+            return;
+        }
+        if (crawlContext.finishSite(SiteStatus.INDEXED, null)) {
+            // все страницы сайта уже записаны
+            lemmasService.flushLemmasFrequency(siteDto.getId(), crawlContext.getGeneration(), true);
+            crawlContext.publishGeneration();  // после записи frequency, чтобы поиск сразу видел итоговые значения
+            log.info(siteIndexationFinishedMessage.formatted(siteDto.getUrl(),
+                    System.currentTimeMillis() - crawlContext.getStartTime()));
         }
-
-        Site site = siteRepository.saveAndFlush(SiteMapper.INSTANCE.siteDtoToSite(siteDto));
-        if (site.getStatus() == SiteStatus.FAILED) siteTaskList.clear();
-        return new HashSet<>();
     }
 
-    private Optional<Page> findExistingPage(String path) {
-        return pageRepository.findAllBySiteAndPath(SiteMapper.INSTANCE.siteDtoToSite(siteDto), path).stream()
-                .findFirst();
+    private boolean isContentUnchanged() {
+        return previousVersion != null &&
+                pageDto.getCode() == HttpStatus.OK.value() &&
+                pageDto.getContentHash() != null &&
+                pageDto.getContentHash().equals(previousVersion.getContentHash());
     }
 
-    private Set<Integer> getPreviousLemmasIdSetByPage(Page page) {
-        Set<Index> pageIndexes = indexRepository.findAllByPageId(page.getId());
+    private Set<Integer> getPreviousLemmasIdSetByPageId(int pageId) {
+        Set<Index> pageIndexes = indexRepository.findAllByPageId(pageId);
         return pageIndexes.stream()
                 .map(Index::getLemmaId)
                 .collect(Collectors.toSet());
     }
 
-    private void handlePreviousLemmas(Page page) {
-        Set<Integer> previousLemmasIds = getPreviousLemmasIdSetByPage(page);
-        lemmasService.decrementLemmasFrequencyOrRemoveByIds(previousLemmasIds);
-    }
-
-    private void removePageFromRepository(String relativePath, Site site) {
-        Set<Page> foundPages = pageRepository.findAllBySiteAndPath(site, relativePath);
-        pageRepository.deleteAll(foundPages);
+    private void removePreviousVersion(int pageId) {
+        lemmasService.decrementLemmasFrequency(siteDto.getId(), getPreviousLemmasIdSetByPageId(pageId));
+        pageRepository.deleteById(pageId);  // индексы страницы удаляются каскадно
+        crawlContext.getNearDuplicateIndex().remove(pageId);
+        // дубликаты удаленной страницы не проиндексированы: без оригинала их контент будет проиндексирован заново
+        pageRepository.clearDuplicateOf(pageId);
     }
 
     private void saveAndUpdatePageDto(PageDto pageDto) {
         pageDto.setSite(SiteMapper.INSTANCE.siteDtoToSite(siteDto));
+        pageDto.setGeneration(crawlContext.getGeneration());
         pageDto.setId(pageRepository.saveAndFlush(pageDto.toEntity()).getId());
     }
 
     private void indexPage(PageDto pageDto) {
-        Map<String, Integer> foundLemmas = lemmasService.collectLemmas(pageDto.getContent());
-        List<Lemma> lemmaEntitiesToIndex = lemmasService.handleLemmas(siteDto, foundLemmas.keySet());
-        int count = indexingService.indexLemmas(indexRepository, lemmaEntitiesToIndex, foundLemmas, pageDto);
+        Map<String, Integer> lemmaIdsToIndex = lemmasService.handleLemmas(siteDto, crawlContext.getGeneration(),
+                foundLemmas.keySet());
+        int count = indexingService.indexLemmas(lemmaIdsToIndex, foundLemmas, pageDto);
         log.info("Проиндексировали " + count + " новых лемм со страницы \"" +
                 pageDto.getPath() +"\" сайта "+ siteDto.getUrl());
     }
 
-    private Set<String> getExistingAndProcessingSiteLinks() {
-        Set<String> linksInProcess = siteTaskList.stream()
-                .map(PageIndexator::getCurrentLink)
-                .collect(Collectors.toSet());  // сначала находим обрабатываемые ссылки
-        Set<Page> existingPages = pageRepository.findAllBySite(SiteMapper.INSTANCE.siteDtoToSite(siteDto));
-        linksInProcess.addAll(existingPages.stream()
-                .map(page -> siteDto.getUrl().concat(page.getPath()))
-                .collect(Collectors.toSet()));  // добавляем к ним из БД
-        return linksInProcess;
+    /* Корневая задача сразу ставит в обход ссылки из sitemap.xml, не дожидаясь обхода по цепочке ссылок */
+    private void seedFromSitemaps() throws InterruptedException {
+        List<String> sitemapLinks = crawlContext.getSitemapSeeder()
+                .collectLinks(crawlContext.getSiteUrl(), robotsRules, httpJsoupConnector);
+        if (sitemapLinks.isEmpty()) return;
+        List<PageIndexator> seededTasks = createNextTasks(getCanonicalLinks(sitemapLinks));
+        log.info("Из sitemap сайта " + siteDto.getUrl() + " поставлено в обход " + seededTasks.size() + " страниц");
+        crawlContext.getCrawlExecutor().submitAll(seededTasks);  // сначала недавно измененные страницы
     }
 
     private List<PageIndexator> prepareNextTasks(PageDto pageDto) {
-        Set<String> nextLinksToIndex = new HashSet<>(getValidAndFormattedLinks(pageDto.getLinks()));
+        Set<UrlNormalizer.CanonicalLink> nextLinksToIndex = getCanonicalLinks(pageDto.getLinks());
         log.info("На странице [" + currentLink + "] найдено " + nextLinksToIndex.size() + " уникальных ссылок");
-        nextLinksToIndex.removeAll(getExistingAndProcessingSiteLinks());
-        return nextLinksToIndex.stream()
-                .map(link -> new PageIndexator(siteDto, link, httpJsoupConnector, siteTaskList,
-                        indexingService, lemmasService,
-                        siteRepository, pageRepository, indexRepository, false))
-                .toList();
+        return createNextTasks(nextLinksToIndex);
     }
 
-    private boolean isValidLink(String linkValue) {
-        if (linkValue.length() <= 1 ||
-                linkValue.startsWith("javascript") ||
-                linkValue.startsWith("tel") ||
-                linkValue.startsWith("mailto")) return false;
-        if (linkValue.startsWith("http")) return linkValue.contains(siteDto.getUrl());
-        return true;
-    }
-
-    private String getFormattedLink(String linkValue) {
-        if (linkValue.startsWith("http")) {
-            if (!linkValue.contains("www.")) {
-                String[] splitResult = linkValue.split("://");
-                // добавляем "www." если отсутствует
-                linkValue = splitResult[0].concat("://www.").concat(splitResult[1]);
-            }
-        } else {
-            // добавляем site url, если ссылка относительная
-            linkValue = siteDto.getUrl().concat(linkValue.startsWith("/") ? linkValue : "/".concat(linkValue));
-        }
-        // избавляемся от внутренних ссылок
-        if (linkValue.contains("#")) linkValue = linkValue.split("#")[0];
-        // очищаем query параметры
-        if (linkValue.contains("?")) linkValue = linkValue.split("\\?")[0];
-        // заменяем "//.../" -> "/"
-        linkValue = "https://".concat(linkValue.substring("https://".length()).replaceAll("/+/", "/"));
-        return linkValue.endsWith("/") ? linkValue : linkValue.concat("/");
+    private List<PageIndexator> createNextTasks(Collection<UrlNormalizer.CanonicalLink> links) {
+        SiteFrontier frontier = crawlContext.getFrontier();
+        return links.stream()
+                .filter(link -> robotsRules.isAllowed(link.link()))  // запрещенные в robots.txt не загружаются
+                .filter(frontier::tryVisit)  // отсеиваем ссылки, уже поставленные в обход
+                .map(link -> new PageIndexator(link.link(), crawlContext,
+                        indexingService, lemmasService, pageRepository, indexRepository, false))
+                .toList();
     }
 
-    private Set<String> getValidAndFormattedLinks(Elements links) {
-        Set<String> foundLinks = new HashSet<>();
-        for (Element link : links) {
-            Attribute linkAttribute = link.attribute("href");
-            String linkValue;
-            try {
-                linkValue = linkAttribute.getValue();
-            } catch (NullPointerException e) {
-                continue;
-            }
-            if (!isValidLink(linkValue)) continue;
-            foundLinks.add(getFormattedLink(linkValue));
+    /* Ссылки сайта в каноническом виде, внешние ссылки и ссылки не на страницы отбрасываются */
+    private Set<UrlNormalizer.CanonicalLink> getCanonicalLinks(Collection<String> links) {
+        UrlNormalizer urlNormalizer = crawlContext.getUrlNormalizer();
+        Set<UrlNormalizer.CanonicalLink> foundLinks = new LinkedHashSet<>();  // порядок важен для ссылок из sitemap
+        for (String href : links) {
+            UrlNormalizer.CanonicalLink canonicalLink = urlNormalizer.normalize(href, currentLink);
+            if (canonicalLink != null) foundLinks.add(canonicalLink);
         }
         return foundLinks;
     }
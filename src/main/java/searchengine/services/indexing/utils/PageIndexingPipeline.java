@@ -0,0 +1,89 @@
+package searchengine.services.indexing.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.ConfigCrawler;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Конвейер обработки загруженных страниц: разбор HTML → лемматизация → запись в БД.
+ * <p>
+ * Каждый этап выполняется своим пулом потоков и принимает задачи через ограниченную очередь.
+ * При заполненной очереди предыдущий этап ждет освобождения места, поэтому загрузка страниц
+ * не обгоняет запись в БД, а в памяти одновременно находится ограниченное число страниц.</p>
+ */
+@Slf4j
+public class PageIndexingPipeline {
+
+    private final ThreadPoolExecutor parseStage;
+    private final ThreadPoolExecutor lemmatizeStage;
+    private final ThreadPoolExecutor persistStage;
+
+    public PageIndexingPipeline(ConfigCrawler.PipelineSettings settings) {
+        int queueCapacity = Math.max(settings.getQueueCapacity(), 1);
+        parseStage = newStageExecutor("parse", settings.getParseWorkers(), queueCapacity);
+        lemmatizeStage = newStageExecutor("lemmatize", settings.getLemmatizeWorkers(), queueCapacity);
+        persistStage = newStageExecutor("persist", settings.getPersistWorkers(), queueCapacity);
+    }
+
+    void submitToParse(PageIndexator task) {
+        submit(parseStage, task, PageIndexator::parse);
+    }
+
+    void submitToLemmatize(PageIndexator task) {
+        submit(lemmatizeStage, task, PageIndexator::lemmatize);
+    }
+
+    void submitToPersist(PageIndexator task) {
+        submit(persistStage, task, PageIndexator::persist);
+    }
+
+    public void shutdownNow() {
+        parseStage.shutdownNow();
+        lemmatizeStage.shutdownNow();
+        persistStage.shutdownNow();
+    }
+
+    public boolean isShutdown() {
+        return persistStage.isShutdown();
+    }
+
+    private void submit(ThreadPoolExecutor stage, PageIndexator task, Consumer<PageIndexator> action) {
+        try {
+            stage.execute(() -> {
+                try {
+                    action.accept(task);
+                } catch (RuntimeException e) {
+                    task.finishWithError(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("[" + task.getCurrentLink() + "] страница не передана на следующий этап, конвейер остановлен");
+        }
+    }
+
+    private static ThreadPoolExecutor newStageExecutor(String stageName, int workers, int queueCapacity) {
+        int poolSize = Math.max(workers, 1);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-" + stageName + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, PageIndexingPipeline::waitForQueueSpace);
+    }
+
+    /* Вместо отказа при заполненной очереди блокирует отправителя до появления места */
+    private static void waitForQueueSpace(Runnable runnable, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) throw new RejectedExecutionException("Этап конвейера остановлен");
+        try {
+            executor.getQueue().put(runnable);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package searchengine.services.indexing.utils;
+
+import searchengine.config.ConfigCrawler;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Правила повторных запросов: экспоненциальная пауза со случайным разбросом и учет Retry-After.
+ * <p>
+ * Разброс не дает задачам, получившим ошибку одновременно, повторить запросы тоже одновременно.</p>
+ */
+public class RetryPolicy {
+
+    private final ConfigCrawler.RetrySettings settings;
+
+    public RetryPolicy(ConfigCrawler.RetrySettings settings) {
+        this.settings = settings;
+    }
+
+    public int getMaxRetries() {
+        return Math.max(settings.getMaxRetries(), 0);
+    }
+
+    /* Повторяются ошибки сети и таймауты, ответы 5xx и 429, но не остальные коды ответа */
+    public boolean isRetryable(Exception e) {
+        if (e instanceof RetryableStatusException) return true;
+        if (e instanceof org.jsoup.HttpStatusException) return false;
+        return e instanceof IOException;
+    }
+
+    /**
+     * @param retry номер повтора с 0
+     * @param retryAfter (мс) пауза из заголовка Retry-After, 0 - не указана
+     * @return (мс) пауза перед повтором
+     */
+    public long getDelay(int retry, long retryAfter) {
+        long delay = Math.min(settings.getMaxDelay(), settings.getBaseDelay() << Math.min(retry, 20));
+        long jittered = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        return Math.max(jittered, Math.min(retryAfter, settings.getMaxRetryAfter()));
+    }
+
+    public static long getRetryAfter(Exception e) {
+        return e instanceof RetryableStatusException retryable ? retryable.getRetryAfter() : 0;
+    }
+
+    /**
+     * Разбор заголовка Retry-After: число секунд или дата HTTP
+     * @return (мс) пауза, 0 - если заголовок отсутствует или некорректен
+     */
+    public static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) return 0;
+        String trimmed = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(trimmed) * 1_000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+            } catch (DateTimeParseException ex) {
+                return 0;
+            }
+        }
+    }
+}
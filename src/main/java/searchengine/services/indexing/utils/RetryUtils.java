@@ -3,6 +3,8 @@ package searchengine.services.indexing.utils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.ForkJoinPool;
+
 @Slf4j
 @RequiredArgsConstructor
 public class RetryUtils {
@@ -11,29 +13,39 @@ public class RetryUtils {
         void run() throws Exception;
     }
 
-    public static void withRetry(int maxTimes, long intervalWait, ThrowingRunnable runnable) throws Exception {
-        if (maxTimes <= 0) throw new IllegalArgumentException("Количество повторных запусков должно быть от 1!");
-        if (intervalWait <= 0) throw new IllegalArgumentException("Время ожидания должно быть от 1!");
-
-        int retryCounter = 0;
-        Exception thrown = null;
-        while (retryCounter <= maxTimes) {
+    public static void withRetry(RetryPolicy retryPolicy, ThrowingRunnable runnable) throws Exception {
+        for (int retry = 0; ; retry++) {
             try {
-                if(retryCounter > 0) log.debug("Повторная попытка вызова! " + runnable);
+                if (retry > 0) log.debug("Повторная попытка вызова! " + runnable);
 
                 runnable.run();
                 return;
+            } catch (InterruptedException e) {
+                throw e;  // прерывание не повторяется
             } catch (Exception e) {
-                thrown = e;
-                retryCounter++;
+                if (retry >= retryPolicy.getMaxRetries() || !retryPolicy.isRetryable(e)) throw e;
+                long delay = retryPolicy.getDelay(retry, RetryPolicy.getRetryAfter(e));
+                log.debug("Повтор через " + delay + " мс после ошибки: " + e.getMessage());
+                sleep(delay);
+            }
+        }
+    }
+
+    /* Пауза между повторами в потоке ForkJoinPool: пул может подключить компенсирующий поток */
+    private static void sleep(long delay) throws InterruptedException {
+        long wakeUpTime = System.currentTimeMillis() + delay;
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                long remaining = wakeUpTime - System.currentTimeMillis();
+                if (remaining > 0) Thread.sleep(remaining);
+                return true;
             }
 
-            try {
-                Thread.sleep(intervalWait);
-            } catch (InterruptedException wakeAndAbort) {
-                break;
+            @Override
+            public boolean isReleasable() {
+                return System.currentTimeMillis() >= wakeUpTime;
             }
-        }
-        throw thrown;
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package searchengine.services.indexing.utils;
+
+import org.jsoup.HttpStatusException;
+
+/**
+ * Ответ, после которого запрос стоит повторить (5xx, 429), с паузой из заголовка Retry-After
+ */
+public class RetryableStatusException extends HttpStatusException {
+
+    private final long retryAfter;  // (мс) 0 - заголовок не указан
+
+    public RetryableStatusException(int statusCode, String url, long retryAfter) {
+        super("HTTP error fetching URL", statusCode, url);
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,169 @@
+package searchengine.services.indexing.utils;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Правила robots.txt для нашего бота (RFC 9309).
+ * <p>
+ * Используется группа с совпадающим User-agent, иначе группа "*". Из правил Allow/Disallow
+ * применяется самое длинное совпавшее, при равной длине приоритет у Allow.</p>
+ */
+public class RobotsRules {
+
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), 0, List.of());
+    public static final RobotsRules DISALLOW_ALL = new RobotsRules(List.of(new Rule(false, "/")), 0, List.of());
+
+    private final List<Rule> rules;
+    private final long crawlDelay;  // (мс) 0 - не задана
+    private final List<String> sitemaps;  // ссылки на sitemap.xml из директив Sitemap
+
+    private RobotsRules(List<Rule> rules, long crawlDelay, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelay = crawlDelay;
+        this.sitemaps = sitemaps;
+    }
+
+    /**
+     * Разбор текста robots.txt
+     * @param text содержимое файла
+     * @param userAgent имя нашего бота
+     * @return правила группы бота или группы "*"
+     */
+    public static RobotsRules parse(String text, String userAgent) {
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+        GroupCollector own = new GroupCollector();
+        GroupCollector common = new GroupCollector();
+        List<String> sitemaps = new ArrayList<>();
+
+        boolean groupMatchesOwn = false;
+        boolean groupMatchesCommon = false;
+        boolean readingAgents = false;
+        for (String line : text.split("\r\n|\r|\n")) {
+            int commentStart = line.indexOf('#');
+            if (commentStart >= 0) line = line.substring(0, commentStart);
+            int separator = line.indexOf(':');
+            if (separator < 0) continue;
+            String key = line.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(separator + 1).trim();
+
+            switch (key) {
+                case "user-agent" -> {
+                    if (!readingAgents) {  // начало новой группы
+                        groupMatchesOwn = false;
+                        groupMatchesCommon = false;
+                        readingAgents = true;
+                    }
+                    String token = value.toLowerCase(Locale.ROOT);
+                    if (token.equals("*")) groupMatchesCommon = true;
+                    else if (!token.isEmpty() && agent.contains(token)) groupMatchesOwn = true;
+                    own.present |= groupMatchesOwn;
+                }
+                case "allow", "disallow" -> {
+                    readingAgents = false;
+                    if (value.isEmpty()) continue;  // пустой Disallow ничего не запрещает
+                    Rule rule = new Rule(key.equals("allow"), value);
+                    if (groupMatchesOwn) own.rules.add(rule);
+                    if (groupMatchesCommon) common.rules.add(rule);
+                }
+                case "crawl-delay" -> {
+                    readingAgents = false;
+                    long delay = parseCrawlDelay(value);
+                    if (groupMatchesOwn) own.crawlDelay = delay;
+                    if (groupMatchesCommon) common.crawlDelay = delay;
+                }
+                case "sitemap" -> {
+                    if (!value.isEmpty()) sitemaps.add(value);
+                }
+                default -> readingAgents = false;
+            }
+        }
+        GroupCollector group = own.present ? own : common;
+        return new RobotsRules(List.copyOf(group.rules), group.crawlDelay, Collections.unmodifiableList(sitemaps));
+    }
+
+    /**
+     * Проверка ссылки по правилам Allow/Disallow
+     * @param link полная ссылка на страницу
+     */
+    public boolean isAllowed(String link) {
+        if (rules.isEmpty()) return true;
+        String path = getPathAndQuery(link);
+        Rule matched = null;
+        for (Rule rule : rules) {
+            if (!rule.matches(path)) continue;
+            if (matched == null || rule.length() > matched.length()
+                    || (rule.length() == matched.length() && rule.allow())) {
+                matched = rule;
+            }
+        }
+        return matched == null || matched.allow();
+    }
+
+    public long getCrawlDelay() {
+        return crawlDelay;
+    }
+
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    private static long parseCrawlDelay(String value) {
+        try {
+            return Math.max(0, Math.round(Double.parseDouble(value) * 1_000));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String getPathAndQuery(String link) {
+        try {
+            URI uri = URI.create(link);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            return uri.getRawQuery() == null ? path : path.concat("?").concat(uri.getRawQuery());
+        } catch (IllegalArgumentException e) {  // ссылка с неэкранированными символами
+            int pathStart = link.indexOf('/', link.indexOf("://") + 3);
+            return pathStart < 0 ? "/" : link.substring(pathStart);
+        }
+    }
+
+    private static class GroupCollector {
+
+        private final List<Rule> rules = new ArrayList<>();
+        private long crawlDelay;
+        private boolean present;  // группа для бота есть в файле, даже если без правил
+    }
+
+    /* Шаблон пути: "*" - любая последовательность символов, "$" в конце - конец пути */
+    private record Rule(boolean allow, String pattern, Pattern regex) {
+
+        Rule(boolean allow, String pattern) {
+            this(allow, pattern, compile(pattern));
+        }
+
+        int length() {
+            return pattern.length();
+        }
+
+        boolean matches(String path) {
+            return regex.matcher(path).lookingAt();
+        }
+
+        private static Pattern compile(String pattern) {
+            boolean anchored = pattern.endsWith("$");
+            String body = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+            String[] parts = body.split("\\*", -1);
+            StringBuilder regex = new StringBuilder();
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) regex.append(".*");
+                if (!parts[i].isEmpty()) regex.append(Pattern.quote(parts[i]));
+            }
+            if (anchored) regex.append('$');
+            return Pattern.compile(regex.toString(), Pattern.DOTALL);
+        }
+    }
+}
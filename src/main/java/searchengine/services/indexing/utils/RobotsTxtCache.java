@@ -0,0 +1,101 @@
+package searchengine.services.indexing.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.ConfigCrawler;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кэш правил robots.txt по хостам.
+ * <p>
+ * Файл загружается один раз за время хранения кэша, задачи сайта ждут первой загрузки и дальше
+ * читают правила без блокировок. Crawl-delay передается в {@link HostFetchScheduler}.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RobotsTxtCache {
+
+    static final long MAX_CRAWL_DELAY = 30_000;  // (мс) предел паузы из Crawl-delay, чтобы обход не замирал
+    static final long UNAVAILABLE_CACHE_TTL = 60_000;  // (мс) повторная загрузка файла после ошибки сервера
+
+    private final ConfigCrawler configCrawler;
+    private final HostFetchScheduler hostFetchScheduler;
+    private final Map<String, CachedRules> cachedRules = new ConcurrentHashMap<>();
+
+    /**
+     * Правила robots.txt для сайта, при необходимости загружает файл
+     * @param siteUrl адрес главной страницы сайта
+     * @param httpJsoupConnector сервис запросов к сайту
+     * @return правила для нашего бота, {@link RobotsRules#ALLOW_ALL} если файла нет (4xx) или проверка отключена,
+     * {@link RobotsRules#DISALLOW_ALL} если сервер не отдал файл (5xx или нет ответа)
+     * @throws InterruptedException если ожидание загрузки прервано
+     */
+    public RobotsRules getRules(String siteUrl, HttpJsoupConnector httpJsoupConnector) throws InterruptedException {
+        if (!configCrawler.isRespectRobotsTxt()) return RobotsRules.ALLOW_ALL;
+
+        String host = HostFetchScheduler.getHost(siteUrl);
+        CachedRules cached = cachedRules.computeIfAbsent(host, key -> new CachedRules());
+        RobotsRules rules = cached.getIfFresh();
+        if (rules != null) return rules;
+
+        cached.lock.lockInterruptibly();  // без synchronized, чтобы не закреплять виртуальные потоки
+        try {
+            rules = cached.getIfFresh();
+            if (rules != null) return rules;
+            rules = load(siteUrl, httpJsoupConnector);
+            hostFetchScheduler.setMinDelay(host, Math.min(rules.getCrawlDelay(), MAX_CRAWL_DELAY));
+            // запрет из-за ошибки сервера временный: файл загружается снова через минуту
+            cached.update(rules, rules == RobotsRules.DISALLOW_ALL ? UNAVAILABLE_CACHE_TTL : getCacheTtl());
+            return rules;
+        } finally {
+            cached.lock.unlock();
+        }
+    }
+
+    private RobotsRules load(String siteUrl, HttpJsoupConnector httpJsoupConnector) throws InterruptedException {
+        String robotsLink = URI.create(siteUrl).resolve("/robots.txt").toString();
+        HttpJsoupConnector.Resource resource = httpJsoupConnector.fetchResource(robotsLink);
+        RobotsRules rules;
+        if (resource.body() != null) {
+            rules = RobotsRules.parse(new String(resource.body(), StandardCharsets.UTF_8),
+                    HttpJsoupConnector.USER_AGENT);
+        } else if (resource.statusCode() >= 400 && resource.statusCode() < 500) {
+            rules = RobotsRules.ALLOW_ALL;  // файла нет - ограничений нет
+        } else {  // RFC 9309: при 5xx и недоступном сервере весь сайт считается запрещенным
+            log.warn("[" + robotsLink + "] сервер не отдал файл (код " + resource.statusCode() +
+                    "), обход сайта запрещен до повторной загрузки");
+            return RobotsRules.DISALLOW_ALL;
+        }
+        log.info("Загружен " + robotsLink + ", Crawl-delay: " + rules.getCrawlDelay() +
+                " мс, sitemap: " + rules.getSitemaps().size());
+        return rules;
+    }
+
+    private long getCacheTtl() {
+        return configCrawler.getRobotsTxtCacheTtl() * 1_000;
+    }
+
+    private static class CachedRules {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile RobotsRules rules;
+        private volatile long expireTime;  // (мс) время, после которого файл загружается снова
+
+        RobotsRules getIfFresh() {
+            RobotsRules current = rules;
+            return current != null && System.currentTimeMillis() < expireTime ? current : null;
+        }
+
+        void update(RobotsRules rules, long ttl) {
+            this.expireTime = System.currentTimeMillis() + ttl;
+            this.rules = rules;
+        }
+    }
+}
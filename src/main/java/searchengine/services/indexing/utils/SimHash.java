@@ -0,0 +1,39 @@
+package searchengine.services.indexing.utils;
+
+import java.util.Map;
+
+/**
+ * 64-битный SimHash страницы по ее леммам: у похожих текстов отпечатки отличаются в малом числе бит
+ */
+public class SimHash {
+
+    static final int MIN_LEMMAS = 10;  // на страницах с меньшим числом лемм отпечаток ненадежен
+
+    private SimHash() {
+    }
+
+    /**
+     * @param lemmasCount key-value мапа страницы: "лемма" - "кол-во на странице"
+     * @return отпечаток страницы или null, если лемм слишком мало для сравнения
+     */
+    public static Long compute(Map<String, Integer> lemmasCount) {
+        if (lemmasCount.size() < MIN_LEMMAS) return null;
+        double[] weights = new double[Long.SIZE];
+        lemmasCount.forEach((lemma, count) -> {
+            long hash = SiteFrontier.fingerprint(lemma);
+            double weight = 1 + Math.log(count);  // частые слова не должны перевешивать весь текст
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                weights[bit] += ((hash >>> bit) & 1) == 1 ? weight : -weight;
+            }
+        });
+        long simHash = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) simHash |= 1L << bit;
+        }
+        return simHash;
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+}
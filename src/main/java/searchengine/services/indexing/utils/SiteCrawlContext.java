@@ -0,0 +1,85 @@
+package searchengine.services.indexing.utils;
+
+import lombok.Getter;
+import lombok.Setter;
+import searchengine.dto.indexing.SiteDto;
+import searchengine.model.SiteStatus;
+
+/**
+ * Общее состояние обхода одного сайта, разделяемое всеми его задачами PageIndexator
+ */
+@Getter
+public class SiteCrawlContext {
+
+    private final Integer siteId;  // id сайта в БД
+    private final int generation;  // поколение индекса, в которое пишет обход
+    private final boolean buildingGeneration;  // обход заполняет новое поколение, поиск идет по предыдущему
+    private final String siteUrl;  // адрес главной страницы сайта
+    private final String rootLink;  // ссылка, с которой начинается обход
+    private final HttpJsoupConnector httpJsoupConnector;  // сервис запросов к сайту
+    private final CrawlProgress crawlProgress = new CrawlProgress();  // незавершенные задачи и счетчики страниц
+    private final SiteFrontier frontier = new SiteFrontier();  // уже поставленные в обход ссылки
+    private final UrlNormalizer urlNormalizer;  // приведение найденных ссылок к каноническому виду
+    private final CrawlMode mode;  // режим обхода сайта
+    private final RobotsTxtCache robotsTxtCache;  // правила robots.txt по хостам
+    private final SitemapSeeder sitemapSeeder;  // начальное заполнение очереди ссылками из sitemap.xml
+    private final NearDuplicateIndex nearDuplicateIndex;  // отпечатки страниц для поиска дубликатов
+    private final SiteIndexingState siteState;  // статус сайта в памяти вместо чтения из БД
+    private final SiteStatusHeartbeat siteStatusHeartbeat;  // отложенная запись статуса сайта
+    private final IndexGenerationManager indexGenerationManager;  // переключение поколений индекса
+
+    @Setter private volatile CrawlExecutor crawlExecutor;  // исполнитель задач обхода
+    @Setter private volatile PageIndexingPipeline pipeline;  // этапы обработки загруженных страниц
+
+    public SiteCrawlContext(SiteDto siteDto, int generation, HttpJsoupConnector httpJsoupConnector,
+                            RobotsTxtCache robotsTxtCache, SitemapSeeder sitemapSeeder,
+                            NearDuplicateIndex nearDuplicateIndex, SiteStatusHeartbeat siteStatusHeartbeat,
+                            IndexGenerationManager indexGenerationManager, String rootLink, CrawlMode mode) {
+        this.siteId = siteDto.getId();
+        this.generation = generation;
+        this.buildingGeneration = generation != siteDto.getGeneration();
+        this.siteUrl = siteDto.getUrl();
+        this.rootLink = rootLink;
+        this.urlNormalizer = new UrlNormalizer(siteUrl);
+        this.httpJsoupConnector = httpJsoupConnector;
+        this.robotsTxtCache = robotsTxtCache;
+        this.sitemapSeeder = sitemapSeeder;
+        this.nearDuplicateIndex = nearDuplicateIndex;
+        this.siteStatusHeartbeat = siteStatusHeartbeat;
+        this.indexGenerationManager = indexGenerationManager;
+        this.siteState = siteStatusHeartbeat.register(siteDto);
+        this.mode = mode;
+        frontier.tryVisit(rootLink);
+    }
+
+    /* (мс) время начала обхода */
+    public long getStartTime() {
+        return crawlProgress.getStartTime();
+    }
+
+    public boolean isIncremental() {
+        return mode == CrawlMode.INCREMENTAL;
+    }
+
+    /* Обход пишет в поколение с уже сохраненными страницами, поэтому прошлая версия страницы заменяется */
+    public boolean isKeepingPages() {
+        return mode != CrawlMode.FULL;
+    }
+
+    /**
+     * Завершение индексации сайта с немедленной записью статуса в БД
+     * @return true, если завершение отмечено этим вызовом
+     */
+    public boolean finishSite(SiteStatus status, String errorText) {
+        return siteStatusHeartbeat.finish(siteState, status, errorText);
+    }
+
+    /* Успешно завершенный обход становится доступен поиску, предыдущее поколение удалится в фоне */
+    public void publishGeneration() {
+        indexGenerationManager.publish(siteId, generation, buildingGeneration);
+    }
+
+    public RobotsRules getRobotsRules() throws InterruptedException {
+        return robotsTxtCache.getRules(siteUrl, httpJsoupConnector);  // первый вызов загружает robots.txt
+    }
+}
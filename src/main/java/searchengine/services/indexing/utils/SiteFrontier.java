@@ -0,0 +1,54 @@
+package searchengine.services.indexing.utils;
+
+/**
+ * Фронтир обхода сайта: набор отпечатков уже поставленных в обход ссылок.
+ * <p>
+ * Позволяет отсеивать повторные ссылки в памяти, без выборки всех страниц сайта из БД
+ * на каждую обработанную страницу. Хранит 64-битные отпечатки, а не сами строки ссылок.</p>
+ */
+public class SiteFrontier {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final LongHashSet visitedFingerprints = new LongHashSet();
+
+    /**
+     * Отмечает ссылку как поставленную в обход
+     * @param link полная отформатированная ссылка
+     * @return true, если ссылка встретилась впервые и ее нужно обойти
+     */
+    public boolean tryVisit(String link) {
+        return visitedFingerprints.add(fingerprint(link));
+    }
+
+    /**
+     * Отмечает ссылку как поставленную в обход по уже посчитанному отпечатку
+     * @param canonicalLink ссылка после {@link UrlNormalizer}
+     * @return true, если ссылка встретилась впервые и ее нужно обойти
+     */
+    public boolean tryVisit(UrlNormalizer.CanonicalLink canonicalLink) {
+        return visitedFingerprints.add(canonicalLink.fingerprint());
+    }
+
+    public boolean isVisited(String link) {
+        return visitedFingerprints.contains(fingerprint(link));
+    }
+
+    public int visitedCount() {
+        return visitedFingerprints.size();
+    }
+
+    /* 64-битный отпечаток ссылки (FNV-1a с финальным перемешиванием) */
+    static long fingerprint(String link) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < link.length(); i++) {
+            hash ^= link.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
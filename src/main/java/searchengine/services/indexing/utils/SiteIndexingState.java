@@ -0,0 +1,109 @@
+package searchengine.services.indexing.utils;
+
+import lombok.Getter;
+import searchengine.dto.indexing.SiteDto;
+import searchengine.model.SiteStatus;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Состояние индексации сайта в памяти: задачи проверяют статус и отмечают прогресс без запросов к БД.
+ * <p>
+ * Изменения записываются в таблицу site через {@link SiteStatusHeartbeat}: прогресс - периодически,
+ * смена статуса - сразу. Статус меняется только один раз из INDEXING в INDEXED или FAILED.</p>
+ */
+public class SiteIndexingState {
+
+    @Getter private final Integer siteId;  // id сайта в БД
+    @Getter private final String url;  // адрес главной страницы сайта
+    @Getter private final String name;  // имя сайта
+    private final int generation;  // поколение индекса, по которому идет поиск
+    private final Integer buildGeneration;  // поколение, заполняемое полным обходом
+    private final ReentrantLock lock = new ReentrantLock();  // смена статуса и запись в БД не пересекаются
+    private final AtomicBoolean dirty = new AtomicBoolean();  // есть незаписанный прогресс
+
+    private volatile SiteStatus status;
+    private volatile String lastError;  // текст ошибки индексации
+    private volatile LocalDateTime statusTime;  // время последнего изменения
+
+    public SiteIndexingState(SiteDto siteDto) {
+        this.siteId = siteDto.getId();
+        this.url = siteDto.getUrl();
+        this.name = siteDto.getName();
+        this.generation = siteDto.getGeneration();
+        this.buildGeneration = siteDto.getBuildGeneration();
+        this.status = siteDto.getStatus();
+        this.lastError = siteDto.getLastError();
+        this.statusTime = LocalDateTime.now();
+    }
+
+    public boolean isIndexing() {
+        return status == SiteStatus.INDEXING;
+    }
+
+    public SiteStatus getStatus() {
+        return status;
+    }
+
+    /* Отметка о завершении задачи обхода: status_time обновится при следующей записи */
+    public void touch() {
+        statusTime = LocalDateTime.now();
+        dirty.set(true);
+    }
+
+    /**
+     * Завершение индексации сайта
+     * @param newStatus INDEXED или FAILED
+     * @param errorText текст ошибки для FAILED или null
+     * @return true, если статус изменился этим вызовом
+     */
+    boolean finish(SiteStatus newStatus, String errorText) {
+        lock.lock();
+        try {
+            if (status != SiteStatus.INDEXING) return false;
+            status = newStatus;
+            if (errorText != null) lastError = errorText;
+            touch();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ReentrantLock getLock() {
+        return lock;
+    }
+
+    /* Сбрасывает признак изменений, возвращает true, если запись в БД нужна */
+    boolean takeDirty() {
+        return dirty.getAndSet(false);
+    }
+
+    void markDirty() {
+        dirty.set(true);
+    }
+
+    String getLastError() {
+        return lastError;
+    }
+
+    LocalDateTime getStatusTime() {
+        return statusTime;
+    }
+
+    /* Dto сайта с актуальным статусом для связи страниц и лемм с сайтом */
+    public SiteDto toSiteDto() {
+        SiteDto siteDto = new SiteDto();
+        siteDto.setId(siteId);
+        siteDto.setUrl(url);
+        siteDto.setName(name);
+        siteDto.setGeneration(generation);
+        siteDto.setBuildGeneration(buildGeneration);
+        siteDto.setStatus(status);
+        siteDto.setStatusTime(statusTime);
+        siteDto.setLastError(lastError);
+        return siteDto;
+    }
+}
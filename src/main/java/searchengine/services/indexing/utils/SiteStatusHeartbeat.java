@@ -0,0 +1,78 @@
+package searchengine.services.indexing.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.dto.indexing.SiteDto;
+import searchengine.model.SiteStatus;
+import searchengine.repositories.SiteRepository;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отложенная запись состояния индексируемых сайтов в таблицу site.
+ * <p>
+ * Задачи обхода отмечают прогресс в {@link SiteIndexingState}, а status_time записывается одним UPDATE
+ * на сайт раз в crawler-settings.status-heartbeat-interval. Завершение или ошибка индексации
+ * записываются сразу, после чего сайт убирается из списка.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SiteStatusHeartbeat {
+
+    private final SiteRepository siteRepository;
+    private final Map<Integer, SiteIndexingState> activeStates = new ConcurrentHashMap<>();
+
+    /**
+     * Начало индексации сайта, статус уже записан в БД
+     * @param siteDto сохраненный сайт со статусом INDEXING
+     * @return состояние сайта, общее для всех задач обхода
+     */
+    public SiteIndexingState register(SiteDto siteDto) {
+        SiteIndexingState state = new SiteIndexingState(siteDto);
+        activeStates.put(state.getSiteId(), state);
+        return state;
+    }
+
+    public Optional<SiteIndexingState> findBySiteId(int siteId) {
+        return Optional.ofNullable(activeStates.get(siteId));
+    }
+
+    /**
+     * Завершение индексации сайта с немедленной записью в БД
+     * @param state состояние сайта
+     * @param status INDEXED или FAILED
+     * @param errorText текст ошибки для FAILED или null
+     * @return true, если статус изменился этим вызовом (завершение уже было отмечено другой задачей - false)
+     */
+    public boolean finish(SiteIndexingState state, SiteStatus status, String errorText) {
+        if (!state.finish(status, errorText)) return false;
+        flush(state);
+        activeStates.remove(state.getSiteId(), state);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${crawler-settings.status-heartbeat-interval:5000}",
+            initialDelayString = "${crawler-settings.status-heartbeat-interval:5000}")
+    public void flushAll() {
+        activeStates.values().forEach(this::flush);
+    }
+
+    private void flush(SiteIndexingState state) {
+        state.getLock().lock();  // запись прогресса не должна затереть уже записанное завершение
+        try {
+            if (!state.takeDirty()) return;
+            siteRepository.updateStatusById(state.getSiteId(), state.getStatus(), state.getStatusTime(),
+                    state.getLastError());
+        } catch (RuntimeException e) {
+            state.markDirty();  // повторится при следующей записи
+            log.error("[" + state.getUrl() + "] не удалось записать состояние сайта: " + e.getLocalizedMessage());
+        } finally {
+            state.getLock().unlock();
+        }
+    }
+}
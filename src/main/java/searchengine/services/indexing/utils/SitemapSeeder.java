@@ -0,0 +1,131 @@
+package searchengine.services.indexing.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.ConfigCrawler;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Сбор ссылок сайта из sitemap.xml (включая sitemapindex) для начального заполнения очереди обхода.
+ * <p>
+ * Ссылки возвращаются по убыванию lastmod: недавно измененные страницы загружаются первыми,
+ * ссылки без lastmod - в конце в порядке следования в файлах.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SitemapSeeder {
+
+    static final int MAX_SITEMAP_FILES = 100;  // предел вложенных файлов sitemapindex
+    static final String SITEMAP_NAMESPACE = "http://www.sitemaps.org/schemas/sitemap/0.9";
+
+    private final ConfigCrawler configCrawler;
+
+    /**
+     * Загрузка ссылок из sitemap сайта
+     * @param siteUrl адрес главной страницы сайта
+     * @param robotsRules правила robots.txt (директивы Sitemap), при их отсутствии берется /sitemap.xml
+     * @param httpJsoupConnector сервис запросов к сайту
+     * @return полные ссылки на страницы, новые по lastmod - первыми
+     * @throws InterruptedException если ожидание загрузки прервано
+     */
+    public List<String> collectLinks(String siteUrl, RobotsRules robotsRules,
+                                     HttpJsoupConnector httpJsoupConnector) throws InterruptedException {
+        if (!configCrawler.isSitemapSeeding()) return List.of();
+
+        Deque<String> sitemapQueue = new ArrayDeque<>(robotsRules.getSitemaps().isEmpty() ?
+                List.of(URI.create(siteUrl).resolve("/sitemap.xml").toString()) : robotsRules.getSitemaps());
+        Set<String> loadedSitemaps = new HashSet<>();
+        List<SitemapEntry> entries = new ArrayList<>();
+        int maxUrls = configCrawler.getSitemapMaxUrls();
+
+        while (!sitemapQueue.isEmpty() && loadedSitemaps.size() < MAX_SITEMAP_FILES && entries.size() < maxUrls) {
+            String sitemapLink = sitemapQueue.poll();
+            if (!loadedSitemaps.add(sitemapLink)) continue;
+            Optional<byte[]> body = httpJsoupConnector.getResource(sitemapLink);
+            if (body.isEmpty()) continue;
+            try {
+                parse(body.get(), entries, sitemapQueue, maxUrls);
+            } catch (XMLStreamException e) {
+                log.warn("[" + sitemapLink + "] ошибка разбора sitemap: " + e.getMessage());
+            }
+        }
+
+        entries.sort(Comparator.comparingLong(SitemapEntry::lastModified).reversed());  // сортировка устойчивая
+        log.info("Из sitemap сайта " + siteUrl + " получено " + entries.size() + " ссылок (файлов: " +
+                loadedSitemaps.size() + ")");
+        return entries.stream().map(SitemapEntry::link).toList();
+    }
+
+    /* Потоковый разбор urlset/sitemapindex: страницы попадают в entries, вложенные sitemap - в очередь */
+    private static void parse(byte[] body, List<SitemapEntry> entries, Deque<String> sitemapQueue, int maxUrls)
+            throws XMLStreamException {
+        XMLStreamReader reader = newInputFactory().createXMLStreamReader(new ByteArrayInputStream(body));
+        try {
+            String loc = null;
+            long lastModified = Long.MIN_VALUE;
+            while (reader.hasNext() && entries.size() < maxUrls) {
+                int event = reader.next();
+                if (!isSitemapElement(reader)) continue;  // расширения (image:loc и т.п.) пропускаются
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "url", "sitemap" -> {
+                            loc = null;
+                            lastModified = Long.MIN_VALUE;
+                        }
+                        case "loc" -> loc = reader.getElementText().trim();
+                        case "lastmod" -> lastModified = parseLastModified(reader.getElementText().trim());
+                        default -> { }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && loc != null && !loc.isEmpty()) {
+                    switch (reader.getLocalName()) {
+                        case "url" -> entries.add(new SitemapEntry(loc, lastModified));
+                        case "sitemap" -> sitemapQueue.add(loc);
+                        default -> { }
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static boolean isSitemapElement(XMLStreamReader reader) {
+        if (!reader.isStartElement() && !reader.isEndElement()) return false;
+        String namespace = reader.getNamespaceURI();
+        return namespace == null || namespace.isEmpty() || namespace.equals(SITEMAP_NAMESPACE);
+    }
+
+    /* Без DTD и внешних сущностей (защита от XXE) */
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /* Формат W3C Datetime: дата или дата со временем и часовым поясом */
+    private static long parseLastModified(String value) {
+        try {
+            if (value.length() == 10) return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+            return OffsetDateTime.parse(value).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private record SitemapEntry(String link, long lastModified) {
+    }
+}
@@ -0,0 +1,259 @@
+package searchengine.services.indexing.utils;
+
+import java.net.URI;
+import java.util.Locale;
+
+/**
+ * Приведение ссылок сайта к каноническому виду за один проход по строке, без регулярных выражений.
+ * <p>
+ * Ссылка разрешается относительно страницы, на которой найдена (RFC 3986). Схема и хост заменяются
+ * адресом сайта из конфига (хост с "www." и без него считается одним), query-параметры и якоря
+ * отбрасываются, повторные "/" и сегменты "." и ".." схлопываются. Percent-кодирование приводится
+ * к одному виду: незарезервированные символы декодируются, символы вне ASCII кодируются в UTF-8
+ * заглавными шестнадцатеричными цифрами. Путь без расширения файла завершается "/".</p>
+ */
+public class UrlNormalizer {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final String siteUrl;  // схема и хост сайта без завершающего "/"
+    private final String siteHost;  // хост сайта в нижнем регистре без "www."
+    private final int sitePort;  // -1 - порт по умолчанию
+    private final int siteDefaultPort;  // порт по умолчанию схемы сайта
+
+    public UrlNormalizer(String siteUrl) {
+        this.siteUrl = siteUrl.endsWith("/") ? siteUrl.substring(0, siteUrl.length() - 1) : siteUrl;
+        URI uri = URI.create(this.siteUrl);
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        this.siteHost = host.startsWith("www.") ? host.substring("www.".length()) : host;
+        this.sitePort = uri.getPort();
+        this.siteDefaultPort = getDefaultPort(uri.getScheme().length());
+    }
+
+    /**
+     * Каноническая ссылка с 64-битным отпечатком для фронтира обхода
+     * @param link полная ссылка
+     * @param fingerprint отпечаток ссылки {@link SiteFrontier#fingerprint(String)}
+     */
+    public record CanonicalLink(String link, long fingerprint) {
+    }
+
+    /**
+     * @param href значение атрибута href или ссылка из sitemap.xml
+     * @param baseLink каноническая ссылка страницы, на которой найдена ссылка
+     * @return каноническая ссылка или null, если ссылка ведет за пределы сайта или не на веб-страницу
+     */
+    public CanonicalLink normalize(String href, String baseLink) {
+        int start = 0;
+        int end = href.length();
+        while (start < end && href.charAt(start) <= ' ') start++;
+        while (end > start && href.charAt(end - 1) <= ' ') end--;
+        if (start == end || href.charAt(start) == '#') return null;
+
+        int pathEnd = indexOfQueryOrFragment(href, start, end);
+        StringBuilder out = new StringBuilder(siteUrl.length() + (pathEnd - start) + 16);
+        out.append(siteUrl);
+        int base = out.length();
+        boolean directory = true;
+
+        int pathStart;
+        if (href.startsWith("//", start)) {  // ссылка без схемы
+            pathStart = skipSiteAuthority(href, start + 2, pathEnd, siteDefaultPort);
+        } else {
+            int schemeEnd = findSchemeEnd(href, start, end);
+            if (schemeEnd >= 0) {  // javascript:, mailto:, tel: и другие схемы не являются страницами
+                if (!isHttpScheme(href, start, schemeEnd) || !href.startsWith("//", schemeEnd + 1)) return null;
+                pathStart = skipSiteAuthority(href, schemeEnd + 3, pathEnd, getDefaultPort(schemeEnd - start));
+            } else {
+                pathStart = start;
+                if (href.charAt(start) != '/') directory = appendBasePath(out, baseLink, base, start == pathEnd);
+            }
+        }
+        if (pathStart < 0) return null;  // другой хост или порт
+
+        directory = appendPath(out, href, pathStart, pathEnd, base, directory);
+        if (out.length() == base) {
+            out.append('/');
+        } else if (directory || out.indexOf(".", out.lastIndexOf("/")) < 0) {
+            out.append('/');
+        }
+        String link = out.toString();
+        return new CanonicalLink(link, SiteFrontier.fingerprint(link));
+    }
+
+    /* Каталог страницы для относительной ссылки или весь путь страницы для ссылки вида "?page=2" */
+    private boolean appendBasePath(StringBuilder out, String baseLink, int base, boolean wholePath) {
+        if (baseLink == null || !baseLink.startsWith(siteUrl)) return true;
+        int from = siteUrl.length();
+        int to = wholePath ? baseLink.length() : baseLink.lastIndexOf('/') + 1;
+        return to <= from || appendPath(out, baseLink, from, to, base, true);
+    }
+
+    /**
+     * Добавление сегментов пути с разбором "." и ".."
+     * @return true, если путь завершается каталогом ("/", "." или "..")
+     */
+    private static boolean appendPath(StringBuilder out, String source, int from, int to, int base,
+                                      boolean directory) {
+        int i = from;
+        while (i < to) {
+            int segmentEnd = indexOf(source, '/', i, to);
+            if (segmentEnd == i) {  // пустой сегмент: начальный или повторный "/"
+                i++;
+                continue;
+            }
+            int length = segmentEnd - i;
+            if (length == 1 && source.charAt(i) == '.') {
+                directory = true;
+            } else if (length == 2 && source.charAt(i) == '.' && source.charAt(i + 1) == '.') {
+                int parent = out.lastIndexOf("/");
+                if (parent >= base) out.setLength(parent);
+                directory = true;
+            } else {
+                out.append('/');
+                appendEncoded(out, source, i, segmentEnd);
+                directory = segmentEnd < to;
+            }
+            i = segmentEnd + 1;
+        }
+        return directory;
+    }
+
+    private static void appendEncoded(StringBuilder out, String source, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = source.charAt(i);
+            if (c == '%' && isHexPair(source, i + 1, to)) {
+                int value = Character.digit(source.charAt(i + 1), 16) << 4
+                        | Character.digit(source.charAt(i + 2), 16);
+                if (isUnreserved((char) value)) out.append((char) value);
+                else appendPercentEncoded(out, value);
+                i += 2;
+            } else if (c < 0x80 && isPathChar(c)) {
+                out.append(c);
+            } else if (c < 0x80) {
+                appendPercentEncoded(out, c);
+            } else {
+                int codePoint = Character.codePointAt(source, i);
+                if (Character.isSupplementaryCodePoint(codePoint)) i++;
+                appendUtf8(out, codePoint);
+            }
+        }
+    }
+
+    private static void appendUtf8(StringBuilder out, int codePoint) {
+        if (codePoint < 0x800) {
+            appendPercentEncoded(out, 0xC0 | codePoint >> 6);
+        } else if (codePoint < 0x10000) {
+            appendPercentEncoded(out, 0xE0 | codePoint >> 12);
+            appendPercentEncoded(out, 0x80 | (codePoint >> 6 & 0x3F));
+        } else {
+            appendPercentEncoded(out, 0xF0 | codePoint >> 18);
+            appendPercentEncoded(out, 0x80 | (codePoint >> 12 & 0x3F));
+            appendPercentEncoded(out, 0x80 | (codePoint >> 6 & 0x3F));
+        }
+        appendPercentEncoded(out, 0x80 | (codePoint & 0x3F));
+    }
+
+    private static void appendPercentEncoded(StringBuilder out, int value) {
+        out.append('%').append(HEX_DIGITS[value >> 4 & 0xF]).append(HEX_DIGITS[value & 0xF]);
+    }
+
+    /**
+     * Проверка хоста и порта ссылки
+     * @param defaultPort порт по умолчанию схемы ссылки
+     * @return начало пути или -1, если ссылка ведет на другой сайт
+     */
+    private int skipSiteAuthority(String href, int from, int pathEnd, int defaultPort) {
+        int authorityEnd = indexOf(href, '/', from, pathEnd);
+        int hostStart = from;
+        for (int i = from; i < authorityEnd; i++) {
+            if (href.charAt(i) == '@') hostStart = i + 1;  // userinfo перед хостом
+        }
+        int hostEnd;
+        if (hostStart < authorityEnd && href.charAt(hostStart) == '[') {  // IPv6 адрес содержит ":"
+            hostEnd = indexOf(href, ']', hostStart, authorityEnd);
+            if (hostEnd == authorityEnd) return -1;
+            hostEnd++;
+            if (hostEnd < authorityEnd && href.charAt(hostEnd) != ':') return -1;
+        } else {
+            hostEnd = indexOf(href, ':', hostStart, authorityEnd);
+        }
+        if (!isPortAllowed(href, hostEnd + 1, authorityEnd, defaultPort)) return -1;
+
+        int hostLength = hostEnd - hostStart;
+        if (hostLength == siteHost.length() + "www.".length()
+                && href.regionMatches(true, hostStart, "www.", 0, "www.".length())) {
+            hostStart += "www.".length();
+            hostLength -= "www.".length();
+        }
+        boolean sameHost = hostLength == siteHost.length()
+                && href.regionMatches(true, hostStart, siteHost, 0, hostLength);
+        return sameHost ? authorityEnd : -1;
+    }
+
+    /* Явно указанный порт допустим, если совпадает с портом сайта или сайт на порту по умолчанию, как и ссылка */
+    private boolean isPortAllowed(String href, int from, int to, int defaultPort) {
+        if (from >= to) return true;  // порт не указан
+        int port = 0;
+        for (int i = from; i < to; i++) {
+            char c = href.charAt(i);
+            if (c < '0' || c > '9' || port > 65_535) return false;
+            port = port * 10 + (c - '0');
+        }
+        return port == sitePort || (sitePort == -1 && port == defaultPort);
+    }
+
+    /* http - 80, https - 443 по длине схемы, уже проверенной isHttpScheme */
+    private static int getDefaultPort(int schemeLength) {
+        return schemeLength == "https".length() ? 443 : 80;
+    }
+
+    /* Конец схемы (индекс ":") или -1, если ссылка относительная */
+    private static int findSchemeEnd(String href, int start, int end) {
+        if (!isAsciiLetter(href.charAt(start))) return -1;
+        for (int i = start + 1; i < end; i++) {
+            char c = href.charAt(i);
+            if (c == ':') return i;
+            if (!isAsciiLetter(c) && !(c >= '0' && c <= '9') && c != '+' && c != '-' && c != '.') return -1;
+        }
+        return -1;
+    }
+
+    private static boolean isHttpScheme(String href, int start, int schemeEnd) {
+        int length = schemeEnd - start;
+        return (length == 4 || length == 5) && href.regionMatches(true, start, "https", 0, length);
+    }
+
+    private static int indexOfQueryOrFragment(String href, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = href.charAt(i);
+            if (c == '?' || c == '#') return i;
+        }
+        return to;
+    }
+
+    private static int indexOf(String source, char target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (source.charAt(i) == target) return i;
+        }
+        return to;
+    }
+
+    private static boolean isHexPair(String source, int from, int to) {
+        return from + 1 < to && Character.digit(source.charAt(from), 16) >= 0
+                && Character.digit(source.charAt(from + 1), 16) >= 0;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isUnreserved(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    /* Символы, допустимые в сегменте пути без кодирования: unreserved, sub-delims, ":" и "@" */
+    private static boolean isPathChar(char c) {
+        return isUnreserved(c) || "!$&'()*+,;=:@".indexOf(c) >= 0;
+    }
+}
@@ -0,0 +1,132 @@
+package searchengine.services.indexing.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Исполнитель задач обхода, запускающий каждую задачу в отдельном виртуальном потоке.
+ * <p>
+ * Ожидание HTTP ответов и запросов к БД не занимает платформенный поток, поэтому
+ * одновременно могут ожидать тысячи страниц. Число одновременно обрабатываемых страниц
+ * одного сайта ограничено семафором: разрешение берется до передачи задачи исполнителю,
+ * а задачи сверх лимита ждут в очереди сайта и запускаются по мере освобождения разрешений.</p>
+ * <p>
+ * Виртуальные потоки появились в Java 21, проект собирается под Java 17, поэтому исполнитель
+ * создается через reflection. В JVM без виртуальных потоков режим не запускается: подмена пулом
+ * платформенных потоков незаметно меняла бы поведение обхода, выбранное в настройках.</p>
+ */
+@Slf4j
+public class VirtualThreadCrawlExecutor implements CrawlExecutor {
+
+    private static final String VIRTUAL_THREADS_UNAVAILABLE_MESSAGE =
+            "Режим virtual-threads требует Java 21+, текущая версия Java %d";
+
+    private final ExecutorService executorService = newThreadPerTaskExecutor();
+    private final Map<SiteCrawlContext, SiteSlots> siteSlots = new ConcurrentHashMap<>();
+    private final int maxConcurrentPagesPerSite;
+
+    public VirtualThreadCrawlExecutor(int maxConcurrentPagesPerSite) {
+        this.maxConcurrentPagesPerSite = Math.max(maxConcurrentPagesPerSite, 1);
+    }
+
+    @Override
+    public void submit(PageIndexator task) {
+        // добавление в очередь под блокировкой ключа: не пересекается с удалением простаивающего сайта
+        SiteSlots slots = siteSlots.compute(task.getCrawlContext(), (context, current) -> {
+            SiteSlots result = current != null ? current : new SiteSlots(new Semaphore(maxConcurrentPagesPerSite),
+                    new ConcurrentLinkedQueue<>());
+            result.pending().add(task);
+            return result;
+        });
+        startPending(slots);
+    }
+
+    /* Запускает задачи из очереди сайта, пока есть свободные разрешения */
+    private void startPending(SiteSlots slots) {
+        while (!slots.pending().isEmpty() && slots.permits().tryAcquire()) {
+            PageIndexator task = slots.pending().poll();
+            if (task == null) {  // задачу забрал другой поток
+                slots.permits().release();
+                continue;
+            }
+            try {
+                executorService.execute(() -> runWithPermit(task, slots));
+            } catch (RejectedExecutionException e) {
+                slots.permits().release();
+                log.warn("[" + task.getCurrentLink() + "] задача не запущена, исполнитель остановлен");
+                return;
+            }
+        }
+    }
+
+    private void runWithPermit(PageIndexator task, SiteSlots slots) {
+        try {
+            task.invoke();  // вне ForkJoinPool задача выполняется в текущем потоке
+        } finally {
+            slots.permits().release();
+            startPending(slots);
+            pruneIfIdle(task.getCrawlContext(), slots);
+        }
+    }
+
+    /* Нет ни запущенных, ни ожидающих задач сайта - новых задач его обход уже не создаст */
+    private void pruneIfIdle(SiteCrawlContext crawlContext, SiteSlots slots) {
+        siteSlots.computeIfPresent(crawlContext, (context, current) ->
+                current == slots && current.pending().isEmpty() &&
+                        current.permits().availablePermits() == maxConcurrentPagesPerSite ? null : current);
+    }
+
+    @Override
+    public void shutdownNow() {
+        executorService.shutdownNow();
+        siteSlots.clear();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executorService.isShutdown();
+    }
+
+    /* Поддерживает ли текущая JVM виртуальные потоки */
+    public static boolean isSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Проверка настройки executor-mode при запуске приложения
+     * @throws IllegalStateException если JVM не поддерживает виртуальные потоки
+     */
+    public static void checkSupported() {
+        if (!isSupported()) {
+            throw new IllegalStateException(VIRTUAL_THREADS_UNAVAILABLE_MESSAGE.formatted(Runtime.version().feature()));
+        }
+    }
+
+    private static ExecutorService newThreadPerTaskExecutor() {
+        checkSupported();
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(VIRTUAL_THREADS_UNAVAILABLE_MESSAGE.formatted(Runtime.version().feature()), e);
+        }
+    }
+
+    /* Разрешения и очередь ожидающих задач одного сайта */
+    private record SiteSlots(Semaphore permits, Queue<PageIndexator> pending) {
+    }
+}
@@ -0,0 +1,90 @@
+package searchengine.services.morphology;
+
+/**
+ * Разбиение текста на русские слова за один проход по символам, без регулярных выражений.
+ * <p>
+ * Словом считается непрерывная последовательность букв а-я и А-Я, все остальные символы - разделители.
+ * Копия создается только для каждого слова (в нижнем регистре), позиции слова указывают на исходный текст,
+ * поэтому по ним можно вырезать фрагмент оригинального текста для сниппета.</p>
+ * <pre>
+ * CyrillicTokenizer tokenizer = new CyrillicTokenizer(text);
+ * while (tokenizer.next()) process(tokenizer.token(), tokenizer.start(), tokenizer.end());
+ * </pre>
+ */
+public class CyrillicTokenizer {
+
+    private final CharSequence text;
+    private final int limit;  // конец просматриваемого участка текста (не включая)
+    private int position;  // индекс следующего непросмотренного символа
+    private int start = -1;  // начало текущего слова
+    private int end = -1;  // конец текущего слова (не включая)
+
+    public CyrillicTokenizer(CharSequence text) {
+        this(text, 0, text.length());
+    }
+
+    /**
+     * Разбор участка текста, границы участка не должны разрезать слово, см. {@link #wordBoundary(CharSequence, int)}
+     * @param from начало участка
+     * @param to конец участка (не включая)
+     */
+    public CyrillicTokenizer(CharSequence text, int from, int to) {
+        this.text = text;
+        this.position = from;
+        this.limit = to;
+    }
+
+    /**
+     * Ближайшая граница слов не раньше указанной позиции
+     * @return индекс первого символа, не являющегося буквой, или длина текста
+     */
+    public static int wordBoundary(CharSequence text, int position) {
+        int i = position;
+        while (i < text.length() && i > 0 && isCyrillic(text.charAt(i)) && isCyrillic(text.charAt(i - 1))) i++;
+        return i;
+    }
+
+    /**
+     * Переход к следующему слову
+     * @return false, если слов больше нет
+     */
+    public boolean next() {
+        int length = limit;
+        int i = position;
+        while (i < length && !isCyrillic(text.charAt(i))) i++;
+        if (i >= length) {
+            position = length;
+            return false;
+        }
+        start = i;
+        while (i < length && isCyrillic(text.charAt(i))) i++;
+        end = i;
+        position = i;
+        return true;
+    }
+
+    /* Текущее слово в нижнем регистре */
+    public String token() {
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) chars[i - start] = toLowerCase(text.charAt(i));
+        return new String(chars);
+    }
+
+    /* Индекс первого символа слова в исходном тексте */
+    public int start() {
+        return start;
+    }
+
+    /* Индекс символа после слова в исходном тексте */
+    public int end() {
+        return end;
+    }
+
+    static boolean isCyrillic(char c) {
+        return c >= 'А' && c <= 'я';  // А-Я (U+0410-U+042F) и а-я (U+0430-U+044F) идут подряд
+    }
+
+    static char toLowerCase(char c) {
+        return c <= 'Я' ? (char) (c + ('а' - 'А')) : c;
+    }
+}
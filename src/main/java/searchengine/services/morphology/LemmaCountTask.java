@@ -0,0 +1,66 @@
+package searchengine.services.morphology;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Параллельный подсчет лемм длинного текста: участок делится пополам по границе слов,
+ * пока не станет меньше размера фрагмента, результаты половин складываются.
+ * <p>
+ * LuceneMorphology после загрузки словаря только читает его, поэтому один бин безопасно используется
+ * из нескольких потоков, а {@link MorphologyCache} разделен на сегменты со своими блокировками.</p>
+ */
+class LemmaCountTask extends RecursiveTask<Map<String, Integer>> {
+
+    private final CharSequence text;
+    private final int from;
+    private final int to;
+    private final int chunkSize;  // (символов) участок меньше этого размера считается в текущем потоке
+    private final MorphologyCache morphologyCache;
+
+    LemmaCountTask(CharSequence text, int from, int to, int chunkSize, MorphologyCache morphologyCache) {
+        this.text = text;
+        this.from = from;
+        this.to = to;
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.morphologyCache = morphologyCache;
+    }
+
+    @Override
+    protected Map<String, Integer> compute() {
+        if (to - from <= chunkSize) return countLemmas(text, from, to, morphologyCache);
+
+        int middle = CyrillicTokenizer.wordBoundary(text, from + (to - from) / 2);
+        if (middle >= to) return countLemmas(text, from, to, morphologyCache);  // одно очень длинное слово
+        LemmaCountTask left = new LemmaCountTask(text, from, middle, chunkSize, morphologyCache);
+        LemmaCountTask right = new LemmaCountTask(text, middle, to, chunkSize, morphologyCache);
+        left.fork();
+        Map<String, Integer> rightLemmas = right.compute();
+        return merge(left.join(), rightLemmas);
+    }
+
+    /**
+     * Подсчет лемм участка текста в текущем потоке
+     * @return лемма - количество на участке
+     */
+    static Map<String, Integer> countLemmas(CharSequence text, int from, int to, MorphologyCache morphologyCache) {
+        HashMap<String, Integer> lemmas = new HashMap<>();
+        CyrillicTokenizer tokenizer = new CyrillicTokenizer(text, from, to);
+        while (tokenizer.next()) {
+            WordAnalysis analysis = morphologyCache.analyze(tokenizer.token());
+            if (!analysis.isIndexable()) continue;
+
+            lemmas.merge(analysis.normalForms().get(0), 1, Integer::sum);
+        }
+        return lemmas;
+    }
+
+    /* Меньшая мапа добавляется в большую */
+    private static Map<String, Integer> merge(Map<String, Integer> first, Map<String, Integer> second) {
+        Map<String, Integer> target = first.size() >= second.size() ? first : second;
+        Map<String, Integer> source = target == first ? second : first;
+        source.forEach((lemma, count) -> target.merge(lemma, count, Integer::sum));
+        return target;
+    }
+}
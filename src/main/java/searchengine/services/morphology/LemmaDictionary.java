@@ -0,0 +1,74 @@
+package searchengine.services.morphology;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.model.Lemma;
+import searchengine.repositories.LemmaRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словарь лемм сайтов в памяти: лемма - id строки таблицы lemma.
+ * <p>
+ * Заполняется лениво: леммы страницы, которых нет в словаре, запрашиваются одним запросом IN.
+ * Удаленные из БД леммы убираются из словаря, при удалении сайта словарь сайта очищается целиком.
+ * Словарь хранит леммы одного поколения индекса сайта: запрос другого поколения начинает словарь заново.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaDictionary {
+
+    private final LemmaRepository lemmaRepository;
+    private final Map<Integer, SiteDictionary> siteDictionaries = new ConcurrentHashMap<>();
+
+    /**
+     * Id лемм сайта, уже сохраненных в БД
+     * @param siteId id сайта
+     * @param generation поколение индекса сайта
+     * @param lemmas леммы страницы
+     * @return лемма - id
+     */
+    public Map<String, Integer> getIds(int siteId, int generation, Set<String> lemmas) {
+        Map<String, Integer> dictionary = getSiteDictionary(siteId, generation);
+        Map<String, Integer> lemmaIds = new HashMap<>(lemmas.size() * 2);
+        Set<String> missing = new HashSet<>();
+        for (String lemma : lemmas) {
+            Integer id = dictionary.get(lemma);
+            if (id != null) lemmaIds.put(lemma, id);
+            else missing.add(lemma);
+        }
+        if (missing.isEmpty()) return lemmaIds;
+
+        loadIds(siteId, generation, missing, dictionary, lemmaIds);
+        if (!missing.isEmpty()) log.warn("Не удалось получить id лемм сайта id=" + siteId + ": " + missing);
+        return lemmaIds;
+    }
+
+    /* Сайт удален или индексируется заново */
+    public void clear(int siteId) {
+        siteDictionaries.remove(siteId);
+    }
+
+    private Map<String, Integer> getSiteDictionary(int siteId, int generation) {
+        return siteDictionaries.compute(siteId, (key, dictionary) ->
+                dictionary != null && dictionary.generation() == generation ?
+                        dictionary : new SiteDictionary(generation, new ConcurrentHashMap<>())).ids();
+    }
+
+    /* Найденные леммы переносятся из missing в словарь и результат */
+    private void loadIds(int siteId, int generation, Set<String> missing, Map<String, Integer> dictionary,
+                         Map<String, Integer> lemmaIds) {
+        for (Lemma lemma : lemmaRepository.findAllBySiteIdAndGenerationAndLemmaIn(siteId, generation, missing)) {
+            String value = lemma.getLemma().intern();  // строка хранится в словаре один раз
+            dictionary.put(value, lemma.getId());
+            lemmaIds.put(value, lemma.getId());
+            missing.remove(value);
+        }
+    }
+
+    private record SiteDictionary(int generation, Map<String, Integer> ids) {
+    }
+}
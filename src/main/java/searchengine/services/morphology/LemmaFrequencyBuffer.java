@@ -0,0 +1,124 @@
+package searchengine.services.morphology;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.repositories.LemmaJdbcRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Отложенная запись изменений frequency лемм.
+ * <p>
+ * Страницы только меняют счетчики в памяти (id леммы - изменение), а в БД суммарные изменения
+ * записываются одним пакетом UPDATE раз в crawler-settings.lemma-flush-interval и по окончании обхода.
+ * Частые леммы обновляются один раз за период, а не каждой страницей, поэтому параллельные страницы
+ * не ждут блокировок этих строк.</p>
+ * <p>
+ * Записи одного сайта (плановая и по окончании обхода) выполняются под общей блокировкой сайта,
+ * поэтому удаление неиспользуемых лемм не пересекается с записью их частоты.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaFrequencyBuffer {
+
+    private final LemmaJdbcRepository lemmaJdbcRepository;
+    private final Map<Integer, Map<Integer, AtomicInteger>> siteDeltas = new ConcurrentHashMap<>();
+    private final Map<Integer, ReentrantLock> siteLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Изменение frequency лемм сайта
+     * @param siteId id сайта
+     * @param lemmaIds id лемм
+     * @param delta +1 при индексации страницы, -1 при удалении ее прошлой версии
+     */
+    public void add(int siteId, Collection<Integer> lemmaIds, int delta) {
+        Map<Integer, AtomicInteger> deltas = siteDeltas.computeIfAbsent(siteId, key -> new ConcurrentHashMap<>());
+        for (Integer lemmaId : lemmaIds) {
+            deltas.computeIfAbsent(lemmaId, key -> new AtomicInteger()).addAndGet(delta);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${crawler-settings.lemma-flush-interval:2000}",
+            initialDelayString = "${crawler-settings.lemma-flush-interval:2000}")
+    public void flushAll() {
+        siteDeltas.keySet().forEach(this::flush);
+    }
+
+    /* Остановка приложения: изменения записываются, пока соединения с БД еще открыты */
+    @EventListener(ContextClosedEvent.class)
+    public void flushOnShutdown() {
+        flushAll();
+    }
+
+    /**
+     * Запись накопленных изменений сайта в БД
+     * @param siteId id сайта
+     */
+    public void flush(int siteId) {
+        ReentrantLock lock = siteLocks.computeIfAbsent(siteId, key -> new ReentrantLock());
+        lock.lock();
+        try {
+            flushLocked(siteId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Запись накопленных изменений и удаление лемм поколения, которые не встречаются ни на одной странице.
+     * Вызывается по окончании обхода. Если часть изменений записать не удалось, удаление откладывается:
+     * лемма с незаписанным +1 имеет в БД frequency = 0 и была бы удалена вместе с индексами
+     * @param siteId id сайта
+     * @param generation поколение индекса сайта
+     * @return количество удаленных лемм
+     */
+    public int flushAndDeleteUnused(int siteId, int generation) {
+        ReentrantLock lock = siteLocks.computeIfAbsent(siteId, key -> new ReentrantLock());
+        lock.lock();
+        try {
+            if (!flushLocked(siteId)) {
+                log.warn("Удаление неиспользуемых лемм сайта id=" + siteId + " пропущено: frequency записана не полностью");
+                return 0;
+            }
+            return lemmaJdbcRepository.deleteUnusedBySiteIdAndGeneration(siteId, generation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* Вызывается под блокировкой сайта. false - изменения не записаны и возвращены в буфер */
+    private boolean flushLocked(int siteId) {
+        Map<Integer, AtomicInteger> deltas = siteDeltas.get(siteId);
+        if (deltas == null) return true;
+
+        Map<Integer, Integer> drained = new TreeMap<>();  // по возрастанию id - один порядок блокировки строк
+        deltas.forEach((lemmaId, counter) -> {
+            int delta = counter.getAndSet(0);  // изменения, сделанные после этого, попадут в следующую запись
+            if (delta != 0) drained.put(lemmaId, delta);
+        });
+        if (drained.isEmpty()) return true;
+
+        try {
+            lemmaJdbcRepository.addFrequencyDeltas(drained);  // одна транзакция: пакет записан целиком или не записан
+            log.debug("Записаны изменения frequency " + drained.size() + " лемм сайта id=" + siteId);
+            return true;
+        } catch (RuntimeException e) {
+            drained.forEach((lemmaId, delta) -> add(siteId, List.of(lemmaId), delta));  // транзакция откатена, повторится позже
+            log.error("Не удалось записать frequency лемм сайта id=" + siteId + ": " + e.getLocalizedMessage());
+            return false;
+        }
+    }
+
+    /* Сайт удален или индексируется заново: накопленные изменения не нужны */
+    public void clear(int siteId) {
+        siteDeltas.remove(siteId);
+    }
+}
@@ -3,7 +3,6 @@ package searchengine.services.morphology;
 import searchengine.dto.indexing.SiteDto;
 import searchengine.model.Lemma;
 
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -24,17 +23,39 @@ public interface LemmasService {
     Set<String> getLemmaSet(String text);
 
     /**
-     * Метод обрабатывает найденные на сайте леммы
+     * Метод обрабатывает найденные на сайте леммы: создает новые и увеличивает frequency всех лемм страницы.
+     * Изменения frequency записываются в БД отложенно, см. {@link #flushLemmasFrequency(int, int, boolean)}
      * @param foundPageLemmas найденные леммы со страницы сайта
      * @param siteDto Dto с инфой сайта
+     * @param generation поколение индекса сайта, в которое пишет обход
+     * @return ключ является леммой, а значение ее id в БД
      */
-    List<Lemma> handleLemmas(SiteDto siteDto, Set<String> foundPageLemmas);
+    Map<String, Integer> handleLemmas(SiteDto siteDto, int generation, Set<String> foundPageLemmas);
 
-    void decrementLemmasFrequencyOrRemoveByIds(Set<Integer> previousLemmasIds);
+    /**
+     * Метод уменьшает frequency лемм прошлой версии страницы (отложенно, как и увеличение)
+     * @param siteId id сайта
+     * @param previousLemmasIds id лемм прошлой версии страницы
+     */
+    void decrementLemmasFrequency(int siteId, Set<Integer> previousLemmasIds);
+
+    /**
+     * Метод записывает накопленные изменения frequency лемм сайта в БД
+     * @param siteId id сайта
+     * @param generation поколение индекса сайта, в которое писал обход
+     * @param crawlCompleted обход сайта завершен: леммы, не встречающиеся ни на одной странице, удаляются
+     */
+    void flushLemmasFrequency(int siteId, int generation, boolean crawlCompleted);
+
+    /**
+     * Метод очищает словарь лемм и незаписанные изменения frequency удаленного сайта
+     * @param siteId id сайта
+     */
+    void clearSiteCache(int siteId);
 
     Set<Lemma> findAllByLemmaInOrderByFrequencyAsc(Set<String> queryLemmas);
 
-    int countAllBySiteId(int siteId);
+    int countAllBySiteIdAndGeneration(int siteId, int generation);
 
     String getSnippetFromContentByLemmaValues(String content, Set<String> lemmaValueSet);
 
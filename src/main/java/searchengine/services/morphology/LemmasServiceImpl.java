@@ -2,237 +2,191 @@ package searchengine.services.morphology;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.lucene.morphology.LuceneMorphology;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.util.HtmlUtils;
+import searchengine.config.ConfigMorphology;
 import searchengine.dto.indexing.SiteDto;
 import searchengine.model.Lemma;
+import searchengine.repositories.LemmaJdbcRepository;
 import searchengine.repositories.LemmaRepository;
-import searchengine.services.morphology.exceptions.WordNotFitToDictionaryException;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class LemmasServiceImpl implements LemmasService {
 
-    static final String WORD_TYPE_REGEX = "\\W\\w&&[^а-яА-Я\\s]";
-    static final String[] PARTICLES = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ"};
-    static final String PUNCTUATION = "\\,\\.\\!\\?\\;\\:\\–\\-";
+    static final int SNIPPET_WORDS_AROUND = 5;  // слов до и после найденного слова во фрагменте сниппета
+    static final int SNIPPET_MAX_LENGTH = 150;  // после превышения длины новые фрагменты не добавляются
+    static final int SNIPPET_MAX_GAP = 20;  // (символов) текст между словами фрагмента длиннее заменяется на "…"
 
-    private final LuceneMorphology luceneMorphology;
+    private final MorphologyCache morphologyCache;  // разбор слов LuceneMorphology с кэшированием
+    private final ConfigMorphology configMorphology;  // настройки лемматизации
     private final LemmaRepository lemmaRepository;
+    private final LemmaJdbcRepository lemmaJdbcRepository;  // пакетная запись лемм
+    private final LemmaFrequencyBuffer frequencyBuffer;  // отложенная запись frequency
+    private final LemmaDictionary lemmaDictionary;  // id лемм сайтов без загрузки всех лемм сайта
+    private final LemmatizationPool lemmatizationPool;  // отдельный пул лемматизации длинных страниц
 
     @Override
     public Map<String, Integer> collectLemmas(String text) {
-        String[] ruWords = arrayContainsRussianWords(text);
-        HashMap<String, Integer> lemmas = new HashMap<>();
-
-        for (String word : ruWords) {
-            if (word.isBlank() || isNotInDictionaryOrParticle(word)) continue;
-            Optional<String> optionalNormWord = getFirstNormalForm(word);
-            if (optionalNormWord.isEmpty()) continue;
-
-            int lemmaCount = lemmas.getOrDefault(optionalNormWord.get(), 0);
-            lemmas.put(optionalNormWord.get(), lemmaCount + 1);
+        int threshold = configMorphology.getParallelThreshold();
+        if (threshold <= 0 || text.length() < threshold) {
+            return LemmaCountTask.countLemmas(text, 0, text.length(), morphologyCache);
         }
-        return lemmas;
-    }
-
-    private Optional<String> getFirstNormalForm(String word) {
-        List<String> normalForms = luceneMorphology.getNormalForms(word);
-        if (normalForms.isEmpty()) return Optional.empty();
-        return Optional.of(normalForms.get(0));
+        return lemmatizationPool.invoke(  // длинные страницы делятся на фрагменты по границам слов
+                new LemmaCountTask(text, 0, text.length(), configMorphology.getParallelChunkSize(), morphologyCache));
     }
 
     @Override
     public Set<String> getLemmaSet(String text) {
-        String[] textArray = arrayContainsRussianWords(text);
         Set<String> lemmaSet = new HashSet<>();
-        for (String word : textArray) {
-            if (!word.isEmpty() && isCorrectWordForm(word) && !isNotInDictionaryOrParticle(word)) {
-                lemmaSet.addAll(luceneMorphology.getNormalForms(word));
-            }
+        CyrillicTokenizer tokenizer = new CyrillicTokenizer(text);
+        while (tokenizer.next()) {
+            WordAnalysis analysis = morphologyCache.analyze(tokenizer.token());
+            if (analysis.correctForm() && analysis.isIndexable()) lemmaSet.addAll(analysis.normalForms());
         }
         return lemmaSet;
     }
 
     @Override
-    @Transactional
-    public List<Lemma> handleLemmas(SiteDto siteDto, Set<String> foundPageLemmas) {
-        Set<Lemma> existingSiteLemmaEntities = lemmaRepository.findAllBySiteId(siteDto.getId());
-        return initOrIncrementLemmasFrequency(siteDto, foundPageLemmas, existingSiteLemmaEntities);
-    }
-
-    private List<Lemma> initOrIncrementLemmasFrequency(SiteDto siteDto,
-                                                Set<String> foundPageLemmas, Set<Lemma> existingSiteLemmaEntities) {
-        ArrayList<Lemma> lemmasToIndex = new ArrayList<>();
-        lemmasToIndex.addAll(
-                incrementExistingLemmaEntities(siteDto, foundPageLemmas, existingSiteLemmaEntities));
-        lemmasToIndex.addAll(
-                createNewLemmaEntities(siteDto, foundPageLemmas, getStringLemmasSet(existingSiteLemmaEntities)));
-        return lemmasToIndex;
-    }
-
-    private List<Lemma> incrementExistingLemmaEntities(SiteDto siteDto,
-                                               Set<String> foundPageLemmas, Set<Lemma> existingSiteLemmaEntities) {
-        Set<String> existingPageLemmas = getIntersection(foundPageLemmas, getStringLemmasSet(existingSiteLemmaEntities));
-        Set<Lemma> lemmasToIncrement = existingSiteLemmaEntities.stream()
-                .filter(lemma -> existingPageLemmas.contains(lemma.getLemma()))
-                .collect(Collectors.toSet());
-        return incrementAndSaveExistingPageLemmas(lemmasToIncrement, siteDto);
-    }
-
-    private List<Lemma> createNewLemmaEntities(SiteDto siteDto,
-                                               Set<String> foundPageLemmas, Set<String> existingSiteLemmas) {
-        Set<String> newPageLemmas = getExclusion(foundPageLemmas, existingSiteLemmas);
-        return initAndSaveNewPageLemmas(newPageLemmas, siteDto);
-    }
-
-    private List<Lemma> incrementAndSaveExistingPageLemmas(Set<Lemma> lemmaEntitiesToIncrement, SiteDto siteDto) {
-        if (lemmaEntitiesToIncrement.isEmpty()) return List.of();
-        lemmaEntitiesToIncrement.forEach(lemma -> lemma.setFrequency(lemma.getFrequency() + 1));
-        String lemmas = lemmaEntitiesToIncrement.stream()
-                .peek(lemma -> lemma.setFrequency(lemma.getFrequency() + 1))
-                .map(Lemma::getLemma)
-                .collect(Collectors.joining(", "));
-        log.info("Увеличили frequency " + lemmaEntitiesToIncrement.size() + " лемм сайта \"" +
-                siteDto.getUrl() + "\": " + lemmas);
-        return lemmaRepository.saveAllAndFlush(lemmaEntitiesToIncrement);
-    }
-
-    private List<Lemma> initAndSaveNewPageLemmas(Set<String> newPageLemmas, SiteDto siteDto) {
-        if (newPageLemmas.isEmpty()) return List.of();
-        List<Lemma> newLemmas = newPageLemmas.stream()
-                .map(lemmaValue -> new Lemma(null, siteDto.getId(), lemmaValue, 1))
-                .toList();
-        log.info("Сохранили " + newLemmas.size() + " новые леммы для сайта \"" +
-                siteDto.getUrl() + "\": " + String.join(", ", newPageLemmas));
-        return lemmaRepository.saveAllAndFlush(newLemmas);
+    public Map<String, Integer> handleLemmas(SiteDto siteDto, int generation, Set<String> foundPageLemmas) {
+        if (foundPageLemmas.isEmpty()) return Map.of();
+        Map<String, Integer> lemmaIds = lemmaDictionary.getIds(siteDto.getId(), generation, foundPageLemmas);
+        if (lemmaIds.size() < foundPageLemmas.size()) {  // новые леммы сайта
+            Set<String> newLemmas = new HashSet<>(foundPageLemmas);
+            newLemmas.removeAll(lemmaIds.keySet());
+            lemmaJdbcRepository.insertIfAbsent(siteDto.getId(), generation, newLemmas);
+            lemmaIds.putAll(lemmaDictionary.getIds(siteDto.getId(), generation, newLemmas));
+            if (lemmaIds.size() < foundPageLemmas.size()) {
+                log.warn("Не удалось получить id " + (foundPageLemmas.size() - lemmaIds.size()) +
+                        " лемм сайта \"" + siteDto.getUrl() + "\"");
+            }
+        }
+        frequencyBuffer.add(siteDto.getId(), lemmaIds.values(), 1);  // в БД попадет со следующей записью
+        log.info("Увеличили frequency " + lemmaIds.size() + " лемм сайта \"" + siteDto.getUrl() + "\"");
+        return lemmaIds;
     }
 
-    private Set<String> getIntersection(Set<String> s1, Set<String> s2) {
-        Set<String> intersection = new HashSet<>(s1);
-        intersection.retainAll(s2);
-        return intersection;
+    @Override
+    public void decrementLemmasFrequency(int siteId, Set<Integer> previousLemmasIds) {
+        if (previousLemmasIds.isEmpty()) return;
+        frequencyBuffer.add(siteId, previousLemmasIds, -1);  // леммы с frequency 0 удаляются после обхода
+        log.info("Обработали " + previousLemmasIds.size() + " лемм с предыдущей индексации сайта");
     }
 
-    private Set<String> getExclusion(Set<String> s1, Set<String> s2) {
-        Set<String> exclusion = new HashSet<>(s1);
-        exclusion.removeAll(s2);
-        return exclusion;
+    @Override
+    public void flushLemmasFrequency(int siteId, int generation, boolean crawlCompleted) {
+        if (!crawlCompleted) {
+            frequencyBuffer.flush(siteId);
+            return;
+        }
+        // страниц в обработке уже нет
+        int deleted = frequencyBuffer.flushAndDeleteUnused(siteId, generation);
+        if (deleted == 0) return;
+        lemmaDictionary.clear(siteId);  // id удаленных лемм не должны остаться в словаре
+        log.info("Удалено " + deleted + " лемм сайта id=" + siteId + ", не встречающихся на страницах");
     }
 
     @Override
-    @Transactional
-    public void decrementLemmasFrequencyOrRemoveByIds(Set<Integer> previousLemmasIds) {
-        if (previousLemmasIds.isEmpty()) return;
-
-        Set<Integer> idsToDelete = new HashSet<>();
-        Set<Lemma> lemmasToSave = new HashSet<>();
-        List<Lemma> foundLemmas = lemmaRepository.findAllById(previousLemmasIds);
-        foundLemmas.forEach(lemma -> {
-            int newValue = lemma.getFrequency() - 1;
-            if (newValue < 1) idsToDelete.add(lemma.getId());
-            else {
-                lemma.setFrequency(newValue);
-                lemmasToSave.add(lemma);
-            }
-        });
-        lemmaRepository.saveAllAndFlush(lemmasToSave);
-        lemmaRepository.deleteAllById(idsToDelete);
-        lemmaRepository.flush();
-        log.info("Обработали " + previousLemmasIds.size() + " лемм с предыдущей индексации сайта");
+    public void clearSiteCache(int siteId) {
+        lemmaDictionary.clear(siteId);
+        frequencyBuffer.clear(siteId);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Set<Lemma> findAllByLemmaInOrderByFrequencyAsc(Set<String> queryLemmas) {
-        return lemmaRepository.findAllByLemmaInOrderByFrequencyAsc(queryLemmas);  // поиск по леммам из поисковой строки
+        return lemmaRepository.findAllActiveByLemmaInOrderByFrequencyAsc(queryLemmas);  // поиск по леммам из поисковой строки
     }
 
     @Override
     @Transactional(readOnly = true)
-    public int countAllBySiteId(int siteId) {
-        return lemmaRepository.countAllBySiteId(siteId);
+    public int countAllBySiteIdAndGeneration(int siteId, int generation) {
+        return lemmaRepository.countAllBySiteIdAndGeneration(siteId, generation);
     }
 
     public String getSnippetFromContentByLemmaValues(String content, Set<String> lemmasToFind) {
-        return getSnippet(arrayContainsRussianWordsAndPunctuation(content), lemmasToFind);
-    }
-
-    private String getSnippet(String[] ruWordsWithPunctuation, Set<String> lemmasToFind) {
         StringJoiner sj = new StringJoiner(" ... ");
-        int sliceIntervalLength = 5;
-        for (int i = 0; i < ruWordsWithPunctuation.length; i++) {
-            String word = ruWordsWithPunctuation[i].replaceAll("[" + PUNCTUATION + "]", "");
-            if (word.isBlank()) continue;
-
-            Optional<String> optionalNormWord = getFirstNormalForm(word.toLowerCase());
-            if (optionalNormWord.isEmpty() || !lemmasToFind.contains(optionalNormWord.get().toLowerCase())) continue;
-
-            ruWordsWithPunctuation[i] = "<b>%s</b>".formatted(ruWordsWithPunctuation[i]);
-            String[] slice = Arrays.copyOfRange(ruWordsWithPunctuation,
-                    Math.max(i - sliceIntervalLength, 0),
-                    Math.min(i + sliceIntervalLength + 1, ruWordsWithPunctuation.length));
-            sj.add(String.join(" ", slice));
-            i += sliceIntervalLength;
-            if (sj.length() > 150) break;
+        CyrillicTokenizer tokenizer = new CyrillicTokenizer(content);
+        int[] recentStarts = new int[SNIPPET_WORDS_AROUND + 1];  // начала последних слов для фрагмента до найденного
+        int wordIndex = 0;
+        while (sj.length() <= SNIPPET_MAX_LENGTH && tokenizer.next()) {
+            recentStarts[wordIndex % recentStarts.length] = tokenizer.start();
+            if (!containsLemma(tokenizer.token(), lemmasToFind)) {
+                wordIndex++;
+                continue;
+            }
+            int fragmentStart = recentStarts[Math.max(wordIndex - SNIPPET_WORDS_AROUND, 0) % recentStarts.length];
+            StringBuilder fragment = new StringBuilder();
+            appendWords(fragment, content, fragmentStart, tokenizer.start());
+            fragment.append("<b>");
+            appendEscaped(fragment, content, tokenizer.start(), tokenizer.end());
+            fragment.append("</b>");
+            int fragmentEnd = tokenizer.end();
+            wordIndex++;
+            for (int i = 0; i < SNIPPET_WORDS_AROUND && tokenizer.next(); i++, wordIndex++) {  // слова после найденного
+                recentStarts[wordIndex % recentStarts.length] = tokenizer.start();
+                appendGap(fragment, content, fragmentEnd, tokenizer.start());
+                boolean found = containsLemma(tokenizer.token(), lemmasToFind);
+                if (found) fragment.append("<b>");
+                appendEscaped(fragment, content, tokenizer.start(), tokenizer.end());
+                if (found) fragment.append("</b>");
+                fragmentEnd = tokenizer.end();
+            }
+            sj.add(fragment.toString().strip());
         }
         return sj.toString().concat(" ...");
     }
 
-    private String[] arrayContainsRussianWords(String text) {
-        return text.toLowerCase(Locale.ROOT)
-                .replaceAll("([^а-яА-Я\\s])", " ")
-                .trim()
-                .split("\\s+");
-    }
-
-    private String[] arrayContainsRussianWordsAndPunctuation(String text) {
-        return text.replaceAll("[^а-яА-Я\\s" + PUNCTUATION + "]", "")
-                .replaceAll("\\s{2,}", " ")
-                .replaceAll("[\\s" + PUNCTUATION + "]{3,}", ". ")
-                .split("\\s+");
-    }
-
-    private boolean anyWordBaseBelongToParticle(List<String> wordBaseForms) {
-        return wordBaseForms.stream()
-                .anyMatch(this::hasParticleProperty);
-    }
-
-    private boolean hasParticleProperty(String wordBase) {
-        for (String property : PARTICLES) {
-            if (wordBase.toUpperCase().contains(property)) return true;
-        }
-        return false;
+    private boolean containsLemma(String word, Set<String> lemmasToFind) {
+        List<String> normalForms = morphologyCache.analyze(word).normalForms();
+        return !normalForms.isEmpty() && lemmasToFind.contains(normalForms.get(0));
     }
 
-    private boolean isCorrectWordForm(String word) {
-        List<String> wordInfo = luceneMorphology.getMorphInfo(word);
-        for (String morphInfo : wordInfo) {
-            if (morphInfo.matches(WORD_TYPE_REGEX)) return false;
+    /* Слова участка текста вместе с промежутками между ними, границы участка - границы слов */
+    private static void appendWords(StringBuilder fragment, String content, int from, int to) {
+        CyrillicTokenizer words = new CyrillicTokenizer(content, from, to);
+        int previousEnd = from;
+        while (words.next()) {
+            appendGap(fragment, content, previousEnd, words.start());
+            appendEscaped(fragment, content, words.start(), words.end());
+            previousEnd = words.end();
         }
-        return true;
-    }
-
-    private boolean isNotInDictionaryOrParticle(String word) {
-        try {
-            if (!luceneMorphology.checkString(word)) throw new WordNotFitToDictionaryException(word);
-            List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
-            return anyWordBaseBelongToParticle(wordBaseForms);
-        } catch (WordNotFitToDictionaryException e) {
-            log.warn(e.getLocalizedMessage());
-            return true;
+        appendGap(fragment, content, previousEnd, to);
+    }
+
+    /*
+     * Текст между словами фрагмента: переводы строк и повторные пробелы заменяются одним пробелом,
+     * длинный участок без русских слов (код, текст на другом языке) - многоточием
+     */
+    private static void appendGap(StringBuilder fragment, String content, int from, int to) {
+        StringBuilder gap = new StringBuilder();
+        boolean whitespace = false;
+        for (int i = from; i < to; i++) {
+            char c = content.charAt(i);
+            if (Character.isWhitespace(c)) {
+                whitespace = true;
+                continue;
+            }
+            if (whitespace && !(fragment.isEmpty() && gap.isEmpty())) gap.append(' ');
+            whitespace = false;
+            gap.append(c);
+            if (gap.length() > SNIPPET_MAX_GAP) {
+                fragment.append(fragment.isEmpty() ? "… " : " … ");
+                return;
+            }
         }
+        if (whitespace && !(fragment.isEmpty() && gap.isEmpty())) gap.append(' ');
+        appendEscaped(fragment, gap, 0, gap.length());
     }
 
-    private Set<String> getStringLemmasSet(Set<Lemma> lemmasSet) {
-        return lemmasSet.stream()
-                .map(Lemma::getLemma)
-                .collect(Collectors.toSet());
+    /* Текст страницы выводится как текст: разметкой сниппета являются только теги <b> */
+    private static void appendEscaped(StringBuilder fragment, CharSequence text, int from, int to) {
+        fragment.append(HtmlUtils.htmlEscape(text.subSequence(from, to).toString(), StandardCharsets.UTF_8.name()));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package searchengine.services.morphology;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.config.ConfigMorphology;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Отдельный ForkJoinPool для параллельной лемматизации длинных страниц.
+ * <p>
+ * Фрагменты текста не занимают общий ForkJoinPool.commonPool(), которым пользуются parallel stream
+ * и CompletableFuture, а число потоков задается morphology-settings.parallelism. Пул не объявлен
+ * бином-Executor, чтобы не заменить собой исполнитель задач Spring Boot по умолчанию.</p>
+ */
+@Slf4j
+@Component
+public class LemmatizationPool {
+
+    private final ForkJoinPool pool;
+
+    public LemmatizationPool(ConfigMorphology configMorphology) {
+        int parallelism = configMorphology.getParallelism() > 0 ?
+                configMorphology.getParallelism() : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism);
+        log.info("Пул параллельной лемматизации: " + parallelism + " потоков");
+    }
+
+    /* Подсчет лемм длинного текста, вызывающий поток ждет результата */
+    Map<String, Integer> invoke(LemmaCountTask task) {
+        return pool.invoke(task);
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
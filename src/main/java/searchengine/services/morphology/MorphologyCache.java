@@ -0,0 +1,164 @@
+package searchengine.services.morphology;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.config.ConfigMorphology;
+import searchengine.services.morphology.exceptions.WordNotFitToDictionaryException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченный кэш разбора слов LuceneMorphology: проверка словаря, признак служебной части речи
+ * и нормальные формы хранятся вместе и вычисляются один раз на слово.
+ * <p>
+ * Частоты слов в тексте распределены по закону Ципфа, поэтому небольшой кэш покрывает большую часть
+ * слов. Кэш разделен на сегменты LRU со своими блокировками, чтобы потоки лемматизации и поиска
+ * не ждали друг друга. Доля попаданий периодически выводится в лог.</p>
+ */
+@Slf4j
+@Component
+public class MorphologyCache {
+
+    static final String WORD_TYPE_REGEX = "\\W\\w&&[^а-яА-Я\\s]";
+    static final String[] PARTICLES = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ"};
+    static final int SEGMENTS = 16;  // степень двойки
+
+    private final LuceneMorphology luceneMorphology;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final boolean enabled;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public MorphologyCache(LuceneMorphology luceneMorphology, ConfigMorphology configMorphology) {
+        this.luceneMorphology = luceneMorphology;
+        this.enabled = configMorphology.getCacheSize() > 0;
+        int segmentCapacity = Math.max(configMorphology.getCacheSize() / SEGMENTS, 1);
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(segmentCapacity);
+    }
+
+    /**
+     * Разбор слова с кэшированием
+     * @param word слово в нижнем регистре
+     */
+    public WordAnalysis analyze(String word) {
+        if (!enabled) return computeAnalysis(word);
+        Segment segment = segments[spread(word.hashCode()) & (SEGMENTS - 1)];
+        WordAnalysis analysis = segment.get(word);
+        if (analysis != null) {
+            hits.increment();
+            return analysis;
+        }
+        misses.increment();
+        analysis = computeAnalysis(word);  // вне блокировки: редкий повторный разбор дешевле ожидания
+        segment.put(word, analysis);
+        return analysis;
+    }
+
+    /* Доля попаданий с начала работы, 0 - если обращений не было */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Scheduled(fixedDelayString = "${morphology-settings.cache-stats-interval:60000}",
+            initialDelayString = "${morphology-settings.cache-stats-interval:60000}")
+    public void logStats() {
+        if (!enabled || hits.sum() + misses.sum() == 0) return;
+        log.info("Кэш морфологии: попаданий %.1f%% (%d из %d), вытеснено слов: %d".formatted(
+                getHitRate() * 100, getHitCount(), getHitCount() + getMissCount(), getEvictionCount()));
+    }
+
+    private WordAnalysis computeAnalysis(String word) {
+        try {
+            if (!luceneMorphology.checkString(word)) throw new WordNotFitToDictionaryException(word);
+            List<String> morphInfo = luceneMorphology.getMorphInfo(word);
+            return new WordAnalysis(true, anyWordBaseBelongToParticle(morphInfo), isCorrectWordForm(morphInfo),
+                    List.copyOf(luceneMorphology.getNormalForms(word)));
+        } catch (WordNotFitToDictionaryException e) {
+            log.warn(e.getLocalizedMessage());  // с кэшем - один раз на слово
+            return WordAnalysis.NOT_IN_DICTIONARY;
+        } catch (RuntimeException e) {  // символы вне словаря LuceneMorphology
+            log.warn(new WordNotFitToDictionaryException(word).getLocalizedMessage());
+            return WordAnalysis.NOT_IN_DICTIONARY;
+        }
+    }
+
+    private static boolean anyWordBaseBelongToParticle(List<String> wordBaseForms) {
+        return wordBaseForms.stream()
+                .anyMatch(MorphologyCache::hasParticleProperty);
+    }
+
+    private static boolean hasParticleProperty(String wordBase) {
+        for (String property : PARTICLES) {
+            if (wordBase.toUpperCase().contains(property)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isCorrectWordForm(List<String> wordInfo) {
+        for (String morphInfo : wordInfo) {
+            if (morphInfo.matches(WORD_TYPE_REGEX)) return false;
+        }
+        return true;
+    }
+
+    /* Перемешивание старших битов хэша, как в HashMap */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private class Segment {
+
+        private final ReentrantLock lock = new ReentrantLock();  // без synchronized, чтобы не закреплять виртуальные потоки
+        private final LinkedHashMap<String, WordAnalysis> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(Math.min(capacity, 1 << 12), 0.75f, true) {  // порядок доступа - LRU
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, WordAnalysis> eldest) {
+                    if (size() <= capacity) return false;
+                    evictions.increment();
+                    return true;
+                }
+            };
+        }
+
+        WordAnalysis get(String word) {
+            lock.lock();
+            try {
+                return entries.get(word);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(String word, WordAnalysis analysis) {
+            lock.lock();
+            try {
+                entries.put(word, analysis);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
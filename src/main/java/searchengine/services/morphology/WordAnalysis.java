@@ -0,0 +1,20 @@
+package searchengine.services.morphology;
+
+import java.util.List;
+
+/**
+ * Результат разбора слова LuceneMorphology, хранимый в {@link MorphologyCache}
+ * @param inDictionary слово состоит из букв словаря
+ * @param particle служебная часть речи (междометие, предлог, союз)
+ * @param correctForm морфологическая информация слова корректна
+ * @param normalForms нормальные формы слова, первая используется как лемма
+ */
+public record WordAnalysis(boolean inDictionary, boolean particle, boolean correctForm, List<String> normalForms) {
+
+    static final WordAnalysis NOT_IN_DICTIONARY = new WordAnalysis(false, false, false, List.of());
+
+    /* Слово учитывается при индексации страниц */
+    public boolean isIndexable() {
+        return inDictionary && !particle && !normalForms.isEmpty();
+    }
+}
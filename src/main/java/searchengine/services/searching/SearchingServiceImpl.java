@@ -9,6 +9,7 @@ import searchengine.dto.responses.*;
 import searchengine.model.*;
 import searchengine.repositories.*;
 import searchengine.services.morphology.LemmasService;
+import searchengine.services.searching.index.SearchIndexEngine;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -23,6 +24,7 @@ public class SearchingServiceImpl implements SearchingService {
     private final LemmasService lemmasService;
     private final IndexRepository indexRepository;
     private final PageRepository pageRepository;
+    private final SearchIndexEngine searchIndexEngine;  // поиск по сегментам на диске, если они построены
 
     @Override
     @Transactional(readOnly = true)
@@ -79,13 +81,9 @@ public class SearchingServiceImpl implements SearchingService {
                 .collect(Collectors.toSet());  // отбираем все записи выбранной леммы в БД
         foundLemmas.removeAll(lemmasToFind);  // убираем выбранные леммы из foundLemmas
 
-        Set<Index> indexes = indexRepository.findByLemmaIdIn(lemmasToFind.stream()
+        Set<Integer> foundPageIdSet = new HashSet<>(indexRepository.findPageIdsByLemmaIdIn(lemmasToFind.stream()
                 .map(Lemma::getId)
-                .collect(Collectors.toSet()));  // индексы с текущей леммой
-
-        Set<Integer> foundPageIdSet = indexes.stream()
-                .map(Index::getPageId)
-                .collect(Collectors.toSet());  // страницы с текущей леммой
+                .collect(Collectors.toSet())));  // страницы с текущей леммой
 
         if (foundLemmas.isEmpty()) return foundPageIdSet;
         foundPageIdSet.retainAll(recursivePageIdSetIntersectionByLemmaIds(foundLemmas));  // пересекаем леммы
@@ -102,9 +100,10 @@ public class SearchingServiceImpl implements SearchingService {
                     PageRelevance relevance = new PageRelevance();
                     pageRelevanceSqlResult.forEach((key, value) -> {
                         switch (key) {
-                            case "page_id" -> relevance.setPageId((Integer) value);
-                            case "absolute_relevance" -> relevance.setAbsoluteRelevance((Double) value);
-                            case "relative_relevance" -> relevance.setRelativeRelevance((Double) value);
+                            case "page_id" -> relevance.setPageId(value.intValue());
+                            // SUM целочисленного rank возвращает DECIMAL
+                            case "absolute_relevance" -> relevance.setAbsoluteRelevance(value.doubleValue());
+                            case "relative_relevance" -> relevance.setRelativeRelevance(value.doubleValue());
                             default -> throw new RuntimeException();
                         }
                     });
@@ -114,13 +113,8 @@ public class SearchingServiceImpl implements SearchingService {
     }
 
     private List<Page> getResultPages(Set<Lemma> foundLemmas, Integer offset, Integer limit) {
-        Set<Integer> foundPageIdSet = recursivePageIdSetIntersectionByLemmaIds(
-                new HashSet<>(foundLemmas));  // рекурсивное сложение pageId искомых лемм
-        Set<Integer> foundLemmasIdSet = foundLemmas.stream()
-                .map(Lemma::getId)
-                .collect(Collectors.toSet());
-        List<PageRelevance> pageRelevanceList =
-                getPageRelevanceListByLemmaIdSetAndPageIdSet(foundLemmasIdSet, foundPageIdSet, offset, limit);
+        List<PageRelevance> pageRelevanceList = searchIndexEngine.search(foundLemmas, offset, limit)
+                .orElseGet(() -> getPageRelevanceListFromRepository(foundLemmas, offset, limit));
 
         return pageRelevanceList.isEmpty() ? new ArrayList<>() :
                 pageRepository.findAllById(pageRelevanceList.stream()
@@ -128,6 +122,16 @@ public class SearchingServiceImpl implements SearchingService {
                         .collect(Collectors.toSet()));
     }
 
+    private List<PageRelevance> getPageRelevanceListFromRepository(Set<Lemma> foundLemmas,
+                                                                   Integer offset, Integer limit) {
+        Set<Integer> foundPageIdSet = recursivePageIdSetIntersectionByLemmaIds(
+                new HashSet<>(foundLemmas));  // рекурсивное сложение pageId искомых лемм
+        Set<Integer> foundLemmasIdSet = foundLemmas.stream()
+                .map(Lemma::getId)
+                .collect(Collectors.toSet());
+        return getPageRelevanceListByLemmaIdSetAndPageIdSet(foundLemmasIdSet, foundPageIdSet, offset, limit);
+    }
+
     private SearchResponseData getSearchResponseData(Page resultPage, Set<String> lemmasToFind) {
         SearchResponseData pageSearchResponseData = new SearchResponseData(resultPage);
         pageSearchResponseData.setSnippet(
@@ -0,0 +1,110 @@
+package searchengine.services.searching.index;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Сегмент обратного индекса одного поколения сайта, отображенный в память только для чтения.
+ * Формат описан в {@link PostingsSegmentWriter}. Чтение идет по абсолютным смещениям,
+ * поэтому один сегмент читают параллельные поиски без блокировок
+ */
+class PostingsSegment {
+
+    @Getter private final int siteId;  // id сайта
+    @Getter private final int generation;  // поколение индекса сайта
+    @Getter private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int directoryOffset;
+    private final int lemmaCount;
+
+    /**
+     * Страницы леммы по возрастанию id и rank каждой из них
+     */
+    record Postings(int[] pageIds, int[] ranks) {
+
+        int size() {
+            return pageIds.length;
+        }
+    }
+
+    private PostingsSegment(int siteId, int generation, Path file, MappedByteBuffer buffer,
+                            int directoryOffset, int lemmaCount) {
+        this.siteId = siteId;
+        this.generation = generation;
+        this.file = file;
+        this.buffer = buffer;
+        this.directoryOffset = directoryOffset;
+        this.lemmaCount = lemmaCount;
+    }
+
+    static PostingsSegment open(Path file, int siteId, int generation) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < PostingsSegmentWriter.FOOTER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Некорректный размер сегмента " + file + ": " + size);
+            }
+            // отображение остается доступным после закрытия канала
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int footer = (int) size - PostingsSegmentWriter.FOOTER_SIZE;
+            long directoryOffset = buffer.getLong(footer);
+            int lemmaCount = buffer.getInt(footer + 8);
+            if (buffer.getInt(footer + 12) != PostingsSegmentWriter.MAGIC || lemmaCount < 0 ||
+                    directoryOffset + (long) lemmaCount * PostingsSegmentWriter.DIRECTORY_ENTRY_SIZE != footer) {
+                throw new IOException("Поврежден сегмент " + file);
+            }
+            return new PostingsSegment(siteId, generation, file, buffer, (int) directoryOffset, lemmaCount);
+        }
+    }
+
+    /**
+     * @param lemmaId id леммы сайта
+     * @return страницы леммы или null, если лемма не встречается ни на одной странице
+     */
+    Postings find(int lemmaId) {
+        int low = 0;
+        int high = lemmaCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = directoryOffset + middle * PostingsSegmentWriter.DIRECTORY_ENTRY_SIZE;
+            int middleLemmaId = buffer.getInt(entry);
+            if (middleLemmaId < lemmaId) {
+                low = middle + 1;
+            } else if (middleLemmaId > lemmaId) {
+                high = middle - 1;
+            } else {
+                return decode(buffer.getInt(entry + 4), (int) buffer.getLong(entry + 8));
+            }
+        }
+        return null;
+    }
+
+    private Postings decode(int count, int offset) {
+        int[] pageIds = new int[count];
+        int[] ranks = new int[count];
+        int position = readVarInts(offset, pageIds);
+        readVarInts(position, ranks);
+        for (int i = 1; i < count; i++) pageIds[i] += pageIds[i - 1];  // id страниц хранятся разностями
+        return new Postings(pageIds, ranks);
+    }
+
+    /* Читает target.length чисел varint, возвращает смещение после последнего */
+    private int readVarInts(int position, int[] target) {
+        for (int i = 0; i < target.length; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            target[i] = value;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,110 @@
+package searchengine.services.searching.index;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Потоковая запись сегмента обратного индекса сайта.
+ * <p>
+ * Формат файла: блоки страниц лемм, затем каталог и концевик.
+ * Блок леммы - разности соседних id страниц, затем rank каждой страницы, все числа в формате varint
+ * (7 бит на байт, старший бит - признак продолжения). Каталог - записи (lemma_id, количество страниц,
+ * смещение блока) по возрастанию lemma_id для двоичного поиска. Концевик - смещение каталога,
+ * количество лемм и {@link #MAGIC}.</p>
+ * <p>
+ * Строки должны поступать по возрастанию (lemma_id, page_id) - в порядке первичного ключа таблицы index.</p>
+ */
+class PostingsSegmentWriter implements Closeable {
+
+    static final int MAGIC = 0x50535431;  // "PST1"
+    static final int DIRECTORY_ENTRY_SIZE = 16;  // int lemma_id, int количество страниц, long смещение блока
+    static final int FOOTER_SIZE = 16;  // long смещение каталога, int количество лемм, int MAGIC
+
+    private final DataOutputStream out;
+    private int[] directoryLemmaIds = new int[1_024];
+    private int[] directoryCounts = new int[1_024];
+    private long[] directoryOffsets = new long[1_024];
+    private int lemmaCount;
+
+    private int currentLemmaId = -1;
+    private int[] pageIds = new int[256];  // страницы текущей леммы
+    private int[] ranks = new int[256];
+    private int pageCount;
+
+    PostingsSegmentWriter(Path file) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    }
+
+    void add(int lemmaId, int pageId, int rank) throws IOException {
+        if (lemmaId != currentLemmaId) {
+            if (lemmaId < currentLemmaId) throw new IllegalStateException("Леммы должны идти по возрастанию id");
+            writeBlock();
+            currentLemmaId = lemmaId;
+        } else if (pageId <= pageIds[pageCount - 1]) {
+            throw new IllegalStateException("Страницы леммы id=" + lemmaId + " должны идти по возрастанию id");
+        }
+        if (pageCount == pageIds.length) {
+            pageIds = Arrays.copyOf(pageIds, pageCount * 2);
+            ranks = Arrays.copyOf(ranks, pageCount * 2);
+        }
+        pageIds[pageCount] = pageId;
+        ranks[pageCount] = rank;
+        pageCount++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+            long directoryOffset = checkedSize();
+            for (int i = 0; i < lemmaCount; i++) {
+                out.writeInt(directoryLemmaIds[i]);
+                out.writeInt(directoryCounts[i]);
+                out.writeLong(directoryOffsets[i]);
+            }
+            out.writeLong(directoryOffset);
+            out.writeInt(lemmaCount);
+            out.writeInt(MAGIC);
+            checkedSize();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (pageCount == 0) return;
+        if (lemmaCount == directoryLemmaIds.length) {
+            directoryLemmaIds = Arrays.copyOf(directoryLemmaIds, lemmaCount * 2);
+            directoryCounts = Arrays.copyOf(directoryCounts, lemmaCount * 2);
+            directoryOffsets = Arrays.copyOf(directoryOffsets, lemmaCount * 2);
+        }
+        directoryLemmaIds[lemmaCount] = currentLemmaId;
+        directoryCounts[lemmaCount] = pageCount;
+        directoryOffsets[lemmaCount] = checkedSize();
+        lemmaCount++;
+
+        int previousPageId = 0;
+        for (int i = 0; i < pageCount; i++) {
+            writeVarInt(pageIds[i] - previousPageId);
+            previousPageId = pageIds[i];
+        }
+        for (int i = 0; i < pageCount; i++) writeVarInt(ranks[i]);
+        pageCount = 0;
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /* Сегмент отображается в память одним буфером, поэтому ограничен 2 ГБ */
+    private long checkedSize() throws IOException {
+        if (out.size() == Integer.MAX_VALUE) throw new IOException("Размер сегмента превышает 2 ГБ");
+        return out.size();
+    }
+}
@@ -0,0 +1,265 @@
+package searchengine.services.searching.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.config.ConfigSearchIndex;
+import searchengine.dto.searching.PageRelevance;
+import searchengine.model.Lemma;
+import searchengine.model.Site;
+import searchengine.repositories.IndexJdbcRepository;
+import searchengine.repositories.SiteRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Встроенный обратный индекс для поиска без запросов к таблице index (включается search-index-settings.enabled).
+ * <p>
+ * Для текущего поколения каждого сайта на диске хранится сегмент {@link PostingsSegment}: страницы каждой
+ * леммы по возрастанию id с rank. Сегмент перестраивается в фоне после успешной индексации сайта
+ * чтением таблицы index в порядке первичного ключа. Обход, изменяющий текущее поколение на месте
+ * (обновление, индексация одной страницы), удаляет сегмент сайта на время своей работы.</p>
+ * <p>
+ * Если сегмента хотя бы одного сайта из запроса нет, поиск выполняется через MySQL.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SearchIndexEngine {
+
+    static final Pattern SEGMENT_FILE_PATTERN = Pattern.compile("site-(\\d+)-gen-(\\d+)\\.seg");
+
+    private final ConfigSearchIndex configSearchIndex;
+    private final IndexJdbcRepository indexJdbcRepository;
+    private final SiteRepository siteRepository;
+    private final Map<Integer, PostingsSegment> segments = new ConcurrentHashMap<>();  // id сайта - сегмент
+    private final Map<Integer, AtomicLong> siteVersions = new ConcurrentHashMap<>();  // счетчики удалений сегмента
+    private final ReentrantLock installLock = new ReentrantLock();  // установка и удаление сегментов
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-index-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public boolean isEnabled() {
+        return configSearchIndex.isEnabled();
+    }
+
+    /* Загрузка сегментов текущих поколений, остальные файлы удаляются, недостающие сегменты строятся */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSegments() {
+        if (!isEnabled()) return;
+        Map<Integer, Site> sites = siteRepository.findAll().stream()
+                .collect(Collectors.toMap(Site::getId, site -> site));
+        try {
+            Files.createDirectories(getDirectory());
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(getDirectory())) {
+                for (Path file : files) loadOrDelete(file, sites);
+            }
+        } catch (IOException e) {
+            log.error("Не удалось прочитать каталог сегментов " + getDirectory() + ": " + e.getLocalizedMessage());
+        }
+        sites.values().stream()
+                .filter(site -> !segments.containsKey(site.getId()))
+                .forEach(site -> rebuild(site.getId(), site.getGeneration()));
+    }
+
+    /**
+     * Перестроение сегмента сайта в фоне после успешной индексации
+     * @param siteId id сайта
+     * @param generation текущее поколение индекса сайта
+     */
+    public void rebuild(int siteId, int generation) {
+        if (!isEnabled()) return;
+        long version = getSiteVersion(siteId).get();
+        builder.submit(() -> build(siteId, generation, version));
+    }
+
+    /**
+     * Удаление сегмента сайта: данные сайта меняются или удалены, до перестроения поиск идет через MySQL
+     * @param siteId id сайта
+     */
+    public void invalidate(int siteId) {
+        if (!isEnabled()) return;
+        installLock.lock();
+        try {
+            getSiteVersion(siteId).incrementAndGet();  // строящийся сегмент не будет установлен
+            PostingsSegment removed = segments.remove(siteId);
+            if (removed != null) deleteFile(removed.getFile());
+        } finally {
+            installLock.unlock();
+        }
+    }
+
+    /**
+     * Поиск страниц, содержащих все леммы запроса, с релевантностью как в
+     * {@link searchengine.repositories.IndexRepository#getPageIdAndRelevanceByLemmaIdSetAndPageIdSet}
+     * @param foundLemmas леммы запроса текущих поколений сайтов
+     * @return страницы по убыванию релевантности или empty, если нужного сегмента нет
+     */
+    public Optional<List<PageRelevance>> search(Collection<Lemma> foundLemmas, int offset, int limit) {
+        if (!isEnabled() || foundLemmas.isEmpty()) return Optional.empty();
+        long uniqueLemmasCount = foundLemmas.stream().map(Lemma::getLemma).distinct().count();
+        Map<Integer, List<Lemma>> lemmasBySite = foundLemmas.stream()
+                .collect(Collectors.groupingBy(Lemma::getSiteId));
+
+        List<PostingsSegment.Postings> sitesResults = new ArrayList<>();
+        for (Map.Entry<Integer, List<Lemma>> siteLemmas : lemmasBySite.entrySet()) {
+            PostingsSegment segment = segments.get(siteLemmas.getKey());
+            if (segment == null || siteLemmas.getValue().stream()
+                    .anyMatch(lemma -> lemma.getGeneration() != segment.getGeneration())) {
+                return Optional.empty();
+            }
+            if (siteLemmas.getValue().size() < uniqueLemmasCount) continue;  // на страницах сайта есть не все леммы
+            sitesResults.add(intersect(segment, siteLemmas.getValue()));
+        }
+        return Optional.of(rank(sitesResults, offset, limit));
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+
+    /* Пересечение страниц лемм сайта начиная с самой редкой, ranks результата - сумма rank лемм страницы */
+    private static PostingsSegment.Postings intersect(PostingsSegment segment, List<Lemma> siteLemmas) {
+        List<PostingsSegment.Postings> lemmaPostings = new ArrayList<>(siteLemmas.size());
+        for (Lemma lemma : siteLemmas) {
+            PostingsSegment.Postings postings = segment.find(lemma.getId());
+            if (postings == null) return new PostingsSegment.Postings(new int[0], new int[0]);
+            lemmaPostings.add(postings);
+        }
+        lemmaPostings.sort(Comparator.comparingInt(PostingsSegment.Postings::size));
+
+        int[] pageIds = lemmaPostings.get(0).pageIds();  // массивы декодированы для этого запроса
+        int[] rankSums = lemmaPostings.get(0).ranks();
+        int size = pageIds.length;
+        for (int k = 1; k < lemmaPostings.size() && size > 0; k++) {
+            int[] otherPageIds = lemmaPostings.get(k).pageIds();
+            int[] otherRanks = lemmaPostings.get(k).ranks();
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < size && j < otherPageIds.length; i++) {
+                while (j < otherPageIds.length && otherPageIds[j] < pageIds[i]) j++;
+                if (j < otherPageIds.length && otherPageIds[j] == pageIds[i]) {
+                    pageIds[kept] = pageIds[i];
+                    rankSums[kept] = rankSums[i] + otherRanks[j];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+        return new PostingsSegment.Postings(Arrays.copyOf(pageIds, size), Arrays.copyOf(rankSums, size));
+    }
+
+    private static List<PageRelevance> rank(List<PostingsSegment.Postings> sitesResults, int offset, int limit) {
+        List<PageRelevance> relevanceList = new ArrayList<>();
+        double maxRankSum = 0;
+        for (PostingsSegment.Postings siteResult : sitesResults) {
+            for (int i = 0; i < siteResult.size(); i++) {
+                PageRelevance relevance = new PageRelevance();
+                relevance.setPageId(siteResult.pageIds()[i]);
+                relevance.setAbsoluteRelevance((double) siteResult.ranks()[i]);
+                relevanceList.add(relevance);
+                maxRankSum = Math.max(maxRankSum, siteResult.ranks()[i]);
+            }
+        }
+        for (PageRelevance relevance : relevanceList) {
+            relevance.setRelativeRelevance(relevance.getAbsoluteRelevance() / maxRankSum);
+        }
+        relevanceList.sort(Comparator.comparing(PageRelevance::getRelativeRelevance).reversed());
+        int from = Math.min(offset, relevanceList.size());
+        return relevanceList.subList(from, Math.min(from + limit, relevanceList.size()));
+    }
+
+    private void build(int siteId, int generation, long version) {
+        Path target = getDirectory().resolve("site-" + siteId + "-gen-" + generation + ".seg");
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long startTime = System.currentTimeMillis();
+        try {
+            Files.createDirectories(getDirectory());
+            try (PostingsSegmentWriter writer = new PostingsSegmentWriter(temp)) {
+                indexJdbcRepository.streamPostings(siteId, generation, (lemmaId, pageId, rank) -> {
+                    try {
+                        writer.add(lemmaId, pageId, rank);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            install(siteId, generation, version, temp, target);
+            log.info("Построен сегмент обратного индекса сайта id=" + siteId + ", поколение " + generation +
+                    ", " + Files.size(target) + " байт за " + (System.currentTimeMillis() - startTime) + " мс");
+        } catch (IOException | RuntimeException e) {
+            deleteFile(temp);
+            log.error("Не удалось построить сегмент обратного индекса сайта id=" + siteId + ": " +
+                    e.getLocalizedMessage());
+        }
+    }
+
+    private void install(int siteId, int generation, long version, Path temp, Path target) throws IOException {
+        installLock.lock();
+        try {
+            if (getSiteVersion(siteId).get() != version) {  // данные сайта изменились во время построения
+                deleteFile(temp);
+                return;
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            PostingsSegment previous = segments.put(siteId, PostingsSegment.open(target, siteId, generation));
+            if (previous != null && !previous.getFile().equals(target)) deleteFile(previous.getFile());
+        } finally {
+            installLock.unlock();
+        }
+    }
+
+    private void loadOrDelete(Path file, Map<Integer, Site> sites) {
+        Matcher matcher = SEGMENT_FILE_PATTERN.matcher(file.getFileName().toString());
+        if (!matcher.matches()) {  // недописанный .tmp
+            deleteFile(file);
+            return;
+        }
+        Site site = sites.get(Integer.parseInt(matcher.group(1)));
+        int generation = Integer.parseInt(matcher.group(2));
+        if (site == null || site.getGeneration() != generation) {  // удаленный сайт или старое поколение
+            deleteFile(file);
+            return;
+        }
+        try {
+            segments.put(site.getId(), PostingsSegment.open(file, site.getId(), generation));
+            log.info("Загружен сегмент обратного индекса " + file);
+        } catch (IOException e) {
+            log.warn(e.getLocalizedMessage());
+            deleteFile(file);
+        }
+    }
+
+    private AtomicLong getSiteVersion(int siteId) {
+        return siteVersions.computeIfAbsent(siteId, key -> new AtomicLong());
+    }
+
+    private Path getDirectory() {
+        return Path.of(configSearchIndex.getDirectory());
+    }
+
+    private static void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить файл " + file + ": " + e.getLocalizedMessage());
+        }
+    }
+}
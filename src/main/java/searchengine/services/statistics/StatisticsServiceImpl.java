@@ -79,8 +79,10 @@ public class StatisticsServiceImpl implements StatisticsService {
     }
 
     private DetailedStatisticsItem fillItem(DetailedStatisticsItem item, searchengine.model.Site site) {
-        item.setPages(pageRepository.countAllBySiteId(site.getId()));
-        item.setLemmas(lemmasService.countAllBySiteId(site.getId()));
+        int generation = site.getStatus() == SiteStatus.INDEXING && site.getBuildGeneration() != null ?
+                site.getBuildGeneration() : site.getGeneration();  // во время полного обхода - его прогресс
+        item.setPages(pageRepository.countAllBySiteIdAndGeneration(site.getId(), generation));
+        item.setLemmas(lemmasService.countAllBySiteIdAndGeneration(site.getId(), generation));
         item.setStatus(site.getStatus().name());
         if (item.getStatus().equals(SiteStatus.FAILED.name())) item.setError(site.getLastError());
         item.setStatusTime(site.getStatusTime().toEpochSecond(ZoneOffset.UTC));
@@ -0,0 +1,81 @@
+package searchengine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Страницы для JMH бенчмарков.
+ * <p>
+ * Реальные страницы берутся из каталога -Dbenchmark.pages (сохраненные *.html сайта -Dbenchmark.site),
+ * без него генерируются страницы с русским текстом, разметкой и ссылками разного вида.</p>
+ */
+public final class BenchmarkPages {
+
+    public static final String PAGES_PROPERTY = "benchmark.pages";
+    public static final String SITE_PROPERTY = "benchmark.site";
+    static final String DEFAULT_SITE_URL = "https://www.example.com";
+    static final int GENERATED_PAGES = 50;
+
+    private static final String[] WORDS = ("купить новый смартфон доставка по городу цена скидка гарантия " +
+            "магазин телефон чехол зарядка наушники отзывы покупателей характеристики экран камера " +
+            "и в на с для по не от до").split(" ");
+    private static final String[] HREFS = {"/catalog/", "catalog/phones", "../about", "/news/?page=2",
+            "https://www.example.com/contacts#map", "https://example.com//delivery/", "/files/price.pdf",
+            "/каталог/телефоны/", "mailto:info@example.com", "tel:+79990000000", "javascript:void(0)",
+            "#top", "https://other.com/", "/product/123?utm_source=mail"};
+
+    /**
+     * @param url адрес страницы
+     * @param html исходный код страницы
+     */
+    public record Page(String url, String html) {
+    }
+
+    private BenchmarkPages() {
+    }
+
+    public static String getSiteUrl() {
+        return System.getProperty(SITE_PROPERTY, DEFAULT_SITE_URL);
+    }
+
+    public static List<Page> load() throws IOException {
+        String directory = System.getProperty(PAGES_PROPERTY);
+        if (directory == null) return generate();
+        List<Page> pages = new ArrayList<>();
+        try (Stream<Path> files = Files.list(Path.of(directory))) {
+            for (Path file : files.filter(path -> path.toString().endsWith(".html")).sorted().toList()) {
+                pages.add(new Page(getSiteUrl() + "/" + file.getFileName(),
+                        Files.readString(file, StandardCharsets.UTF_8)));
+            }
+        }
+        if (pages.isEmpty()) throw new IOException("В каталоге " + directory + " нет *.html страниц");
+        return pages;
+    }
+
+    private static List<Page> generate() {
+        Random random = new Random(42);
+        List<Page> pages = new ArrayList<>();
+        for (int i = 0; i < GENERATED_PAGES; i++) {
+            StringBuilder html = new StringBuilder("<html><head><title>Страница ").append(i)
+                    .append("</title></head><body>");
+            int paragraphs = 5 + random.nextInt(40);
+            for (int p = 0; p < paragraphs; p++) {
+                html.append("<p>");
+                for (int w = 0; w < 60; w++) {
+                    html.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(10) == 0 ? ", " : " ");
+                }
+                html.append("Model X-").append(random.nextInt(1000)).append(" &ndash; 2024.</p>");
+                html.append("<a href=\"").append(HREFS[random.nextInt(HREFS.length)]).append("\">ссылка</a>");
+            }
+            html.append("</body></html>");
+            pages.add(new Page(getSiteUrl() + "/page" + i + "/", html.toString()));
+        }
+        return pages;
+    }
+}
@@ -0,0 +1,27 @@
+package searchengine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск JMH бенчмарков из src/test, при обычной сборке пропускается:
+ * mvn test -Dtest=JmhBenchmarksTest -Djmh=true -Djmh.include=CyrillicTokenizerBenchmark
+ * [-Dbenchmark.pages=каталог_с_html -Dbenchmark.site=https://www.сайт.ru]
+ */
+@EnabledIfSystemProperty(named = "jmh", matches = "true")
+class JmhBenchmarksTest {
+
+    @Test
+    void runBenchmarks() throws RunnerException {
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(System.getProperty("jmh.include", ".*Benchmark"));
+        for (String property : new String[]{BenchmarkPages.PAGES_PROPERTY, BenchmarkPages.SITE_PROPERTY}) {
+            String value = System.getProperty(property);
+            if (value != null) options.jvmArgsAppend("-D" + property + "=" + value);  // в форк JMH
+        }
+        new Runner(options.build()).run();
+    }
+}
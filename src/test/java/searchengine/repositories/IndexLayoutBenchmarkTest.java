@@ -0,0 +1,210 @@
+package searchengine.repositories;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Замер поисковых запросов {@link IndexRepository} на таблице index до и после 15_CompactIndexTable.
+ * <p>
+ * На сгенерированном корпусе заполняются две таблицы: прежняя раскладка (суррогатный id, уникальный
+ * (page_id, lemma_id), индекс внешнего ключа на lemma_id, rank FLOAT) и текущая (кластерный ключ
+ * (lemma_id, page_id), rank SMALLINT UNSIGNED). Частоты лемм распределены неравномерно, как в текстах:
+ * запросы замеряются для редких, частых и смешанных лемм. Таблицы создаются и удаляются в указанной
+ * базе, поэтому нужна отдельная пустая база MySQL:</p>
+ * mvn test -Dtest=IndexLayoutBenchmarkTest -Dindex.benchmark.url=jdbc:mysql://localhost:3306/search_engine_bench
+ * <p>
+ * Необязательные параметры: index.benchmark.user, index.benchmark.password (root/root),
+ * index.benchmark.pages (20000), index.benchmark.lemmas-per-page (100).</p>
+ */
+@EnabledIfSystemProperty(named = "index.benchmark.url", matches = ".+")
+class IndexLayoutBenchmarkTest {
+
+    private static final String BEFORE_TABLE = "index_layout_before";
+    private static final String AFTER_TABLE = "index_layout_after";
+    private static final int LEMMAS = 30_000;  // словарь лемм сайта
+    private static final int BATCH_SIZE = 10_000;
+
+    /* Запросы в том виде, в каком их выполняет IndexRepository */
+    private static final String PAGE_IDS_SQL = "SELECT DISTINCT page_id FROM %s WHERE lemma_id IN (%s)";
+    private static final String RELEVANCE_SQL = "WITH pages_ranks_sum AS (" +
+                "SELECT page_id, SUM(`rank`) AS rank_sum " +
+                "FROM %s " +
+                "WHERE lemma_id IN (%s) and page_id IN (%s) " +
+                "GROUP BY page_id" +
+            ")" +
+            "SELECT page_id, rank_sum as absolute_relevance, " +
+                    "rank_sum / (select max(rank_sum) from pages_ranks_sum) AS relative_relevance " +
+            "FROM pages_ranks_sum " +
+            "ORDER BY relative_relevance DESC " +
+            "LIMIT ? OFFSET ?";
+
+    private static Connection connection;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        connection = DriverManager.getConnection(System.getProperty("index.benchmark.url"),
+                System.getProperty("index.benchmark.user", "root"),
+                System.getProperty("index.benchmark.password", "root"));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + BEFORE_TABLE + ", " + AFTER_TABLE);
+            statement.execute("CREATE TABLE " + BEFORE_TABLE + " (" +
+                    "id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY, " +
+                    "page_id INT NOT NULL, " +
+                    "lemma_id INT NOT NULL, " +
+                    "`rank` FLOAT NOT NULL, " +
+                    "UNIQUE KEY pageId_lemmaId (page_id, lemma_id), " +
+                    "KEY fk_index_lemma (lemma_id))");  // индекс, который MySQL создает для внешнего ключа
+            statement.execute("CREATE TABLE " + AFTER_TABLE + " (" +
+                    "page_id INT NOT NULL, " +
+                    "lemma_id INT NOT NULL, " +
+                    "`rank` SMALLINT UNSIGNED NOT NULL, " +
+                    "PRIMARY KEY (lemma_id, page_id))");
+        }
+        int pages = Integer.getInteger("index.benchmark.pages", 20_000);
+        int lemmasPerPage = Integer.getInteger("index.benchmark.lemmas-per-page", 100);
+        long startTime = System.nanoTime();
+        generateCorpus(pages, lemmasPerPage);
+        System.out.printf("корпус: страниц %d, лемм на странице %d, записей %d, %.1f с%n",
+                pages, lemmasPerPage, (long) pages * lemmasPerPage, (System.nanoTime() - startTime) / 1e9);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE " + BEFORE_TABLE + ", " + AFTER_TABLE);
+        }
+    }
+
+    @AfterAll
+    static void tearDown() throws SQLException {
+        if (connection == null) return;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + BEFORE_TABLE + ", " + AFTER_TABLE);
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    void benchmark() throws SQLException {
+        Map<String, List<Integer>> queries = new LinkedHashMap<>();
+        queries.put("редкие леммы", List.of(LEMMAS - 7, LEMMAS - 300, LEMMAS - 5_000));
+        queries.put("частые леммы", List.of(2, 3, 5));
+        queries.put("смешанный запрос", List.of(4, 150, LEMMAS - 1_000));
+        for (Map.Entry<String, List<Integer>> query : queries.entrySet()) {
+            List<Integer> lemmaIds = query.getValue();
+            // страницы с самой редкой леммой запроса, как после первого шага фильтрации в поиске
+            List<Integer> pageIds = findPageIds(AFTER_TABLE, List.of(Collections.max(lemmaIds)));
+            assertEquals(findPageIds(BEFORE_TABLE, lemmaIds), findPageIds(AFTER_TABLE, lemmaIds));
+            assertEquals(relevance(BEFORE_TABLE, lemmaIds, pageIds, Integer.MAX_VALUE),
+                    relevance(AFTER_TABLE, lemmaIds, pageIds, Integer.MAX_VALUE));
+
+            System.out.printf("%s %s, страниц для релевантности %d%n", query.getKey(), lemmaIds, pageIds.size());
+            for (String table : List.of(BEFORE_TABLE, AFTER_TABLE)) {
+                double pageIdsTime = median(() -> findPageIds(table, lemmaIds));
+                double relevanceTime = median(() -> relevance(table, lemmaIds, pageIds, 20));
+                System.out.printf("  %s: findPageIdsByLemmaIdIn %.2f мс, релевантность %.2f мс%n",
+                        table, pageIdsTime, relevanceTime);
+            }
+        }
+    }
+
+    /* Леммы страницы: номер леммы распределен логарифмически равномерно, малые номера - частые леммы */
+    private static void generateCorpus(int pages, int lemmasPerPage) throws SQLException {
+        Random random = new Random(1);
+        connection.setAutoCommit(false);
+        try (PreparedStatement before = connection.prepareStatement("INSERT INTO " + BEFORE_TABLE +
+                     " (page_id, lemma_id, `rank`) VALUES (?, ?, ?)");
+             PreparedStatement after = connection.prepareStatement("INSERT INTO " + AFTER_TABLE +
+                     " (page_id, lemma_id, `rank`) VALUES (?, ?, ?)")) {
+            int batched = 0;
+            for (int pageId = 1; pageId <= pages; pageId++) {
+                Set<Integer> pageLemmas = new HashSet<>();
+                while (pageLemmas.size() < lemmasPerPage) pageLemmas.add((int) Math.pow(LEMMAS, random.nextDouble()));
+                for (int lemmaId : pageLemmas) {
+                    int rank = 1 + (int) (-Math.log(1 - random.nextDouble()) * 2);  // короткий хвост повторов
+                    for (PreparedStatement insert : List.of(before, after)) {
+                        insert.setInt(1, pageId);
+                        insert.setInt(2, lemmaId);
+                        insert.setInt(3, rank);
+                        insert.addBatch();
+                    }
+                    if (++batched % BATCH_SIZE == 0) {
+                        before.executeBatch();
+                        after.executeBatch();
+                        connection.commit();
+                    }
+                }
+            }
+            before.executeBatch();
+            after.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static List<Integer> findPageIds(String table, List<Integer> lemmaIds) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                PAGE_IDS_SQL.formatted(table, placeholders(lemmaIds.size())))) {
+            bind(statement, 1, lemmaIds);
+            List<Integer> pageIds = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) pageIds.add(resultSet.getInt(1));
+            }
+            Collections.sort(pageIds);
+            return pageIds;
+        }
+    }
+
+    /* Страница выдачи с первой позиции: id страниц и абсолютная релевантность */
+    private static Map<Integer, Long> relevance(String table, List<Integer> lemmaIds, List<Integer> pageIds,
+                                                int limit) throws SQLException {
+        if (pageIds.isEmpty()) return Map.of();
+        try (PreparedStatement statement = connection.prepareStatement(RELEVANCE_SQL.formatted(table,
+                placeholders(lemmaIds.size()), placeholders(pageIds.size())))) {
+            int index = bind(statement, bind(statement, 1, lemmaIds), pageIds);
+            statement.setInt(index, limit);
+            statement.setInt(index + 1, 0);
+            Map<Integer, Long> result = new HashMap<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) result.put(resultSet.getInt(1), Math.round(resultSet.getDouble(2)));
+            }
+            return result;
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static int bind(PreparedStatement statement, int index, List<Integer> values) throws SQLException {
+        for (int value : values) statement.setInt(index++, value);
+        return index;
+    }
+
+    /* Медиана 9 замеров после 3 прогревочных, данные к замерам уже в buffer pool */
+    private static double median(SqlAction action) throws SQLException {
+        for (int i = 0; i < 3; i++) action.run();
+        double[] times = new double[9];
+        for (int i = 0; i < times.length; i++) {
+            long startTime = System.nanoTime();
+            action.run();
+            times[i] = (System.nanoTime() - startTime) / 1_000_000.0;
+        }
+        Arrays.sort(times);
+        return times[times.length / 2];
+    }
+
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+}
@@ -0,0 +1,165 @@
+package searchengine.services.indexing.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import searchengine.dto.indexing.SiteDto;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Исполнители задач обхода должны запускать каждую задачу ровно один раз, включая дочерние.
+ * Вместо загрузки страницы задача ждет заданное время, как при ожидании HTTP ответа.
+ * <p>
+ * Замер режимов fork-join и virtual-threads (Java 21+) запускается отдельно:
+ * mvn test -Dtest=CrawlExecutorTest -Dcrawl.benchmark=true</p>
+ */
+class CrawlExecutorTest {
+
+    @Test
+    void forkJoinRunsEveryTaskOnce() throws InterruptedException {
+        assertRunsEveryTaskOnce(ForkJoinCrawlExecutor::new);
+    }
+
+    @Test
+    void virtualThreadsRunEveryTaskOnce() throws InterruptedException {
+        assumeTrue(VirtualThreadCrawlExecutor.isSupported());
+        assertRunsEveryTaskOnce(() -> new VirtualThreadCrawlExecutor(8));
+    }
+
+    @Test
+    void virtualThreadsFailWithoutJvmSupport() {
+        assumeFalse(VirtualThreadCrawlExecutor.isSupported());
+        assertThrows(IllegalStateException.class, () -> new VirtualThreadCrawlExecutor(8));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "crawl.benchmark", matches = "true")
+    void benchmark() throws InterruptedException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (long latency : new long[]{5, 20, 100}) {
+            SiteTree tree = new SiteTree(2, 20, latency);
+            System.out.printf("страниц %d, ожидание ответа %d мс, процессоров %d%n", tree.size(), latency, processors);
+            System.out.printf("  fork-join: %.1f мс%n", median(ForkJoinCrawlExecutor::new, tree));
+            if (!VirtualThreadCrawlExecutor.isSupported()) {
+                System.out.println("  virtual-threads: требуется Java 21+");
+                continue;
+            }
+            for (int maxConcurrentPages : new int[]{16, 64, 256}) {
+                double time = median(() -> new VirtualThreadCrawlExecutor(maxConcurrentPages), tree);
+                System.out.printf("  virtual-threads, max-concurrent-pages-per-site=%d: %.1f мс%n",
+                        maxConcurrentPages, time);
+            }
+        }
+    }
+
+    private static void assertRunsEveryTaskOnce(Supplier<CrawlExecutor> executorFactory)
+            throws InterruptedException {
+        SiteTree tree = new SiteTree(3, 5, 1);
+        Set<String> started = ConcurrentHashMap.newKeySet();
+        AtomicInteger runs = new AtomicInteger();
+        CrawlExecutor crawlExecutor = executorFactory.get();
+        try {
+            CountDownLatch finished = tree.crawl(crawlExecutor, link -> {
+                started.add(link);
+                runs.incrementAndGet();
+            });
+            assertTrue(finished.await(30, TimeUnit.SECONDS));
+        } finally {
+            crawlExecutor.shutdownNow();
+        }
+        assertEquals(tree.size(), runs.get());
+        assertEquals(tree.size(), started.size());
+    }
+
+    /* Медиана 5 обходов после 1 прогревочного */
+    private static double median(Supplier<CrawlExecutor> executorFactory, SiteTree tree) throws InterruptedException {
+        double[] times = new double[6];
+        for (int i = 0; i < times.length; i++) {
+            CrawlExecutor crawlExecutor = executorFactory.get();
+            try {
+                long startTime = System.nanoTime();
+                assertTrue(tree.crawl(crawlExecutor, link -> {}).await(10, TimeUnit.MINUTES));
+                times[i] = (System.nanoTime() - startTime) / 1_000_000.0;
+            } finally {
+                crawlExecutor.shutdownNow();
+            }
+        }
+        Arrays.sort(times, 1, times.length);
+        return times[1 + (times.length - 1) / 2];
+    }
+
+    /* Сайт в виде дерева: у каждой страницы до глубины depth есть fanOut дочерних */
+    private record SiteTree(int depth, int fanOut, long latency) {
+
+        static final String SITE_URL = "https://www.example.com";
+
+        int size() {
+            int size = 0;
+            for (int level = 0, pages = 1; level <= depth; level++, pages *= fanOut) size += pages;
+            return size;
+        }
+
+        CountDownLatch crawl(CrawlExecutor crawlExecutor, Consumer<String> visitor) {
+            SiteDto siteDto = new SiteDto();
+            siteDto.setId(1);
+            siteDto.setUrl(SITE_URL);
+            SiteCrawlContext crawlContext = new SiteCrawlContext(siteDto, 0, null, null, null, null,
+                    new SiteStatusHeartbeat(null), null, SITE_URL + "/", CrawlMode.FULL);
+            crawlContext.setCrawlExecutor(crawlExecutor);
+            CountDownLatch finished = new CountDownLatch(size());
+            crawlExecutor.submit(new SimulatedPage(SITE_URL + "/", 0, this, crawlContext, visitor, finished));
+            return finished;
+        }
+    }
+
+    /* Задача обхода без сети и БД: ожидание ответа и запуск задач по найденным ссылкам */
+    private static class SimulatedPage extends PageIndexator {
+
+        private final int level;
+        private final SiteTree tree;
+        private final Consumer<String> visitor;
+        private final CountDownLatch finished;
+
+        SimulatedPage(String link, int level, SiteTree tree, SiteCrawlContext crawlContext, Consumer<String> visitor,
+                      CountDownLatch finished) {
+            super(link, crawlContext, null, null, null, null, false);
+            this.level = level;
+            this.tree = tree;
+            this.visitor = visitor;
+            this.finished = finished;
+        }
+
+        @Override
+        protected CopyOnWriteArraySet<String> compute() {
+            try {
+                visitor.accept(currentLink);
+                Thread.sleep(tree.latency());
+                if (level < tree.depth()) {
+                    for (int i = 0; i < tree.fanOut(); i++) {
+                        getCrawlContext().getCrawlExecutor().submit(new SimulatedPage(currentLink + i + "/",
+                                level + 1, tree, getCrawlContext(), visitor, finished));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                finished.countDown();
+            }
+            return new CopyOnWriteArraySet<>();
+        }
+    }
+}
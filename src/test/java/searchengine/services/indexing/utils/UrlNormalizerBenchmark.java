@@ -0,0 +1,82 @@
+package searchengine.services.indexing.utils;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.BenchmarkPages;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение обработки ссылок страниц: isValidLink и getFormattedLink прежней версии PageIndexator
+ * и {@link UrlNormalizer}. Замеряется только работа со строками, ссылки извлекаются из страниц заранее.
+ * Запуск: {@link searchengine.JmhBenchmarksTest}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlNormalizerBenchmark {
+
+    private String siteUrl;
+    private List<String> hrefs;
+    private List<String> baseLinks;  // страница, на которой найдена ссылка
+    private UrlNormalizer urlNormalizer;
+
+    @Setup
+    public void setUp() throws IOException {
+        siteUrl = BenchmarkPages.getSiteUrl();
+        urlNormalizer = new UrlNormalizer(siteUrl);
+        hrefs = new ArrayList<>();
+        baseLinks = new ArrayList<>();
+        for (BenchmarkPages.Page page : BenchmarkPages.load()) {
+            for (Element link : Jsoup.parse(page.html(), page.url()).select("a[href]")) {
+                hrefs.add(link.attr("href"));
+                baseLinks.add(page.url());
+            }
+        }
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        for (String href : hrefs) {
+            if (isValidLink(href)) blackhole.consume(getFormattedLink(href));
+        }
+    }
+
+    @Benchmark
+    public void urlNormalizer(Blackhole blackhole) {
+        for (int i = 0; i < hrefs.size(); i++) blackhole.consume(urlNormalizer.normalize(hrefs.get(i), baseLinks.get(i)));
+    }
+
+    /* Прежняя версия PageIndexator */
+    private boolean isValidLink(String linkValue) {
+        if (linkValue.length() <= 1 ||
+                linkValue.startsWith("javascript") ||
+                linkValue.startsWith("tel") ||
+                linkValue.startsWith("mailto")) return false;
+        if (linkValue.startsWith("http")) return linkValue.contains(siteUrl);
+        return true;
+    }
+
+    private String getFormattedLink(String linkValue) {
+        if (linkValue.startsWith("http")) {
+            if (!linkValue.contains("www.")) {
+                String[] splitResult = linkValue.split("://");
+                linkValue = splitResult[0].concat("://www.").concat(splitResult[1]);
+            }
+        } else {
+            linkValue = siteUrl.concat(linkValue.startsWith("/") ? linkValue : "/".concat(linkValue));
+        }
+        if (linkValue.contains("#")) linkValue = linkValue.split("#")[0];
+        if (linkValue.contains("?")) linkValue = linkValue.split("\\?")[0];
+        linkValue = "https://".concat(linkValue.substring("https://".length()).replaceAll("/+/", "/"));
+        return linkValue.endsWith("/") ? linkValue : linkValue.concat("/");
+    }
+}
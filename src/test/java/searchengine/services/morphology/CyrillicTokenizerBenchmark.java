@@ -0,0 +1,119 @@
+package searchengine.services.morphology;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.BenchmarkPages;
+import searchengine.config.ConfigMorphology;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение разбора текста страниц: регулярные выражения прежней версии и {@link CyrillicTokenizer}.
+ * Кэш разбора слов отключен, чтобы сниппеты сравнивались по работе с текстом, а не по кэшу.
+ * Запуск: {@link searchengine.JmhBenchmarksTest}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CyrillicTokenizerBenchmark {
+
+    static final String PUNCTUATION = "\\,\\.\\!\\?\\;\\:\\–\\-";
+
+    private List<String> texts;
+    private Set<String> lemmasToFind;
+    private LuceneMorphology luceneMorphology;
+    private LemmasServiceImpl lemmasService;
+
+    @Setup
+    public void setUp() throws IOException {
+        texts = BenchmarkPages.load().stream()
+                .map(page -> Jsoup.parse(page.html()).text())
+                .toList();
+        luceneMorphology = new RussianLuceneMorphology();
+        ConfigMorphology configMorphology = new ConfigMorphology();
+        configMorphology.setCacheSize(0);
+        configMorphology.setParallelThreshold(0);
+        lemmasService = new LemmasServiceImpl(new MorphologyCache(luceneMorphology, configMorphology),
+                configMorphology, null, null, null, null, null);
+        // две самые частые леммы первой страницы - слова, для которых строится сниппет
+        lemmasToFind = new HashSet<>(lemmasService.collectLemmas(texts.get(0)).entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(2)
+                .map(Map.Entry::getKey)
+                .toList());
+    }
+
+    @Benchmark
+    public int legacyTokens() {
+        int count = 0;
+        for (String text : texts) count += arrayContainsRussianWords(text).length;
+        return count;
+    }
+
+    @Benchmark
+    public int tokenizer(Blackhole blackhole) {
+        int count = 0;
+        for (String text : texts) {
+            CyrillicTokenizer tokenizer = new CyrillicTokenizer(text);
+            while (tokenizer.next()) {
+                blackhole.consume(tokenizer.token());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public void legacySnippet(Blackhole blackhole) {
+        for (String text : texts) blackhole.consume(getSnippet(arrayContainsRussianWordsAndPunctuation(text)));
+    }
+
+    @Benchmark
+    public void snippet(Blackhole blackhole) {
+        for (String text : texts) blackhole.consume(lemmasService.getSnippetFromContentByLemmaValues(text, lemmasToFind));
+    }
+
+    /* Прежняя версия LemmasServiceImpl */
+    private String getSnippet(String[] ruWordsWithPunctuation) {
+        StringJoiner sj = new StringJoiner(" ... ");
+        int sliceIntervalLength = 5;
+        for (int i = 0; i < ruWordsWithPunctuation.length; i++) {
+            String word = ruWordsWithPunctuation[i].replaceAll("[" + PUNCTUATION + "]", "");
+            if (word.isBlank()) continue;
+
+            List<String> normalForms = luceneMorphology.getNormalForms(word.toLowerCase());
+            if (normalForms.isEmpty() || !lemmasToFind.contains(normalForms.get(0).toLowerCase())) continue;
+
+            ruWordsWithPunctuation[i] = "<b>%s</b>".formatted(ruWordsWithPunctuation[i]);
+            String[] slice = Arrays.copyOfRange(ruWordsWithPunctuation,
+                    Math.max(i - sliceIntervalLength, 0),
+                    Math.min(i + sliceIntervalLength + 1, ruWordsWithPunctuation.length));
+            sj.add(String.join(" ", slice));
+            i += sliceIntervalLength;
+            if (sj.length() > 150) break;
+        }
+        return sj.toString().concat(" ...");
+    }
+
+    private static String[] arrayContainsRussianWords(String text) {
+        return text.toLowerCase(Locale.ROOT)
+                .replaceAll("([^а-яА-Я\\s])", " ")
+                .trim()
+                .split("\\s+");
+    }
+
+    private static String[] arrayContainsRussianWordsAndPunctuation(String text) {
+        return text.replaceAll("[^а-яА-Я\\s" + PUNCTUATION + "]", "")
+                .replaceAll("\\s{2,}", " ")
+                .replaceAll("[\\s" + PUNCTUATION + "]{3,}", ". ")
+                .split("\\s+");
+    }
+}
@@ -0,0 +1,95 @@
+package searchengine.services.morphology;
+
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import searchengine.config.ConfigMorphology;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Слова, их позиции в исходном тексте и сниппеты, собранные по этим позициям
+ */
+class CyrillicTokenizerTest {
+
+    private static LemmasServiceImpl lemmasService;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        ConfigMorphology configMorphology = new ConfigMorphology();
+        MorphologyCache morphologyCache = new MorphologyCache(new RussianLuceneMorphology(), configMorphology);
+        lemmasService = new LemmasServiceImpl(morphologyCache, configMorphology, null, null, null, null, null);
+    }
+
+    @Test
+    void splitsOnNonCyrillicCharactersAndLowercases() {
+        assertEquals(List.of("привет", "мир", "дом"), tokens("Привет, МИР! hello 123 дом"));
+        assertEquals(List.of("азбука", "яблоко"), tokens("АЗБУКА_Яблоко"));
+        assertEquals(List.of(), tokens("hello, world 42"));
+        assertEquals(List.of(), tokens(""));
+    }
+
+    @Test
+    void reportsOffsetsInSourceText() {
+        String text = "  Кот-пес\nдом";
+        CyrillicTokenizer tokenizer = new CyrillicTokenizer(text);
+        List<String> words = new ArrayList<>();
+        while (tokenizer.next()) words.add(text.substring(tokenizer.start(), tokenizer.end()));
+        assertEquals(List.of("Кот", "пес", "дом"), words);
+    }
+
+    @Test
+    void tokenizesOnlyGivenRange() {
+        String text = "раз два три";
+        CyrillicTokenizer tokenizer = new CyrillicTokenizer(text, 4, 7);
+        assertTrue(tokenizer.next());
+        assertEquals("два", tokenizer.token());
+        assertEquals(4, tokenizer.start());
+        assertFalse(tokenizer.next());
+    }
+
+    @Test
+    void wordBoundaryDoesNotSplitWords() {
+        String text = "раз два";
+        assertEquals(3, CyrillicTokenizer.wordBoundary(text, 1));
+        assertEquals(3, CyrillicTokenizer.wordBoundary(text, 3));
+        assertEquals(4, CyrillicTokenizer.wordBoundary(text, 4));
+        assertEquals(text.length(), CyrillicTokenizer.wordBoundary(text, 5));
+    }
+
+    @Test
+    void snippetHighlightsFoundWordsWithContext() {
+        String snippet = lemmasService.getSnippetFromContentByLemmaValues(
+                "Мы продаем новые телефоны.\nДоставка телефонов по городу.", Set.of("телефон"));
+        assertEquals("Мы продаем новые <b>телефоны</b>. Доставка <b>телефонов</b> по городу ...", snippet);
+    }
+
+    @Test
+    void snippetEscapesPageText() {
+        String snippet = lemmasService.getSnippetFromContentByLemmaValues(
+                "купить <img onerror=x> телефон & чехол", Set.of("телефон"));
+        assertEquals("купить &lt;img onerror=x&gt; <b>телефон</b> &amp; чехол ...", snippet);
+    }
+
+    @Test
+    void snippetCollapsesLongTextBetweenWords() {
+        String code = "<script>alert('x');</script> for (int i = 0; i < n; i++) { sum += i; }";
+        String snippet = lemmasService.getSnippetFromContentByLemmaValues(
+                "новый " + code + " телефон " + code + " дешево", Set.of("телефон"));
+        assertEquals("новый … <b>телефон</b> … дешево ...", snippet);
+    }
+
+    private static List<String> tokens(String text) {
+        CyrillicTokenizer tokenizer = new CyrillicTokenizer(text);
+        List<String> tokens = new ArrayList<>();
+        while (tokenizer.next()) tokens.add(tokenizer.token());
+        return tokens;
+    }
+}
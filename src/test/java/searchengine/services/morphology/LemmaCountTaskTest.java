@@ -0,0 +1,98 @@
+package searchengine.services.morphology;
+
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import searchengine.config.ConfigMorphology;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Параллельный подсчет лемм должен совпадать с последовательным.
+ * <p>
+ * Замер для выбора parallel-threshold, parallel-chunk-size и parallelism запускается отдельно:
+ * mvn test -Dtest=LemmaCountTaskTest -Dlemmatization.benchmark=true</p>
+ */
+class LemmaCountTaskTest {
+
+    private static final String[] WORDS = ("индексация поисковый движок страница сайт лемма морфология " +
+            "запрос частота документ ссылка обход очередь поток память словарь текст слово предложение " +
+            "быстро медленно новый старый большой маленький читать писать искать находить сохранять " +
+            "и в на по с для не что это как").split(" ");
+
+    private static MorphologyCache morphologyCache;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        morphologyCache = new MorphologyCache(new RussianLuceneMorphology(), new ConfigMorphology());
+    }
+
+    @Test
+    void parallelCountMatchesSequential() {
+        String text = generateText(300_000, 1);
+        Map<String, Integer> expected = LemmaCountTask.countLemmas(text, 0, text.length(), morphologyCache);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunkSize : new int[]{1_000, 7_777, 50_000}) {
+                assertEquals(expected, pool.invoke(new LemmaCountTask(text, 0, text.length(), chunkSize,
+                        morphologyCache)), "chunkSize=" + chunkSize);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "lemmatization.benchmark", matches = "true")
+    void benchmark() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int length : new int[]{50_000, 200_000, 1_000_000}) {
+            String text = generateText(length, length);
+            System.out.printf("текст %d символов, процессоров %d%n", length, processors);
+            System.out.printf("  последовательно: %.1f мс%n",
+                    median(() -> LemmaCountTask.countLemmas(text, 0, text.length(), morphologyCache)));
+            for (int parallelism : new int[]{2, 4, processors}) {
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    for (int chunkSize : new int[]{10_000, 50_000, 200_000}) {
+                        double time = median(() -> pool.invoke(new LemmaCountTask(text, 0, text.length(),
+                                chunkSize, morphologyCache)));
+                        System.out.printf("  parallelism=%d, chunk=%d: %.1f мс%n", parallelism, chunkSize, time);
+                    }
+                } finally {
+                    pool.shutdownNow();
+                }
+            }
+        }
+    }
+
+    /* Медиана 9 замеров после 3 прогревочных, кэш разбора слов к замерам уже заполнен */
+    private static double median(Runnable action) {
+        for (int i = 0; i < 3; i++) action.run();
+        double[] times = new double[9];
+        for (int i = 0; i < times.length; i++) {
+            long startTime = System.nanoTime();
+            action.run();
+            times[i] = (System.nanoTime() - startTime) / 1_000_000.0;
+        }
+        Arrays.sort(times);
+        return times[times.length / 2];
+    }
+
+    private static String generateText(int length, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(length + 32);
+        while (text.length() < length) {
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+            text.append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        return text.toString();
+    }
+}
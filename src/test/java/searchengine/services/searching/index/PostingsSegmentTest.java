@@ -0,0 +1,115 @@
+package searchengine.services.searching.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Запись сегмента обратного индекса и чтение его после отображения в память
+ */
+class PostingsSegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsWrittenPostings() throws IOException {
+        Map<Integer, int[][]> postings = new TreeMap<>();  // lemma_id - {id страниц, rank}
+        postings.put(3, new int[][]{{1}, {1}});
+        postings.put(7, new int[][]{{2, 130, 131, 70_000, Integer.MAX_VALUE}, {5, 127, 128, 16_384, 65_535}});
+        int[] manyPageIds = new int[1_000];  // больше начального размера буферов записи
+        int[] manyRanks = new int[manyPageIds.length];
+        for (int i = 0; i < manyPageIds.length; i++) {
+            manyPageIds[i] = 10 + i * 3;
+            manyRanks[i] = i % 7 + 1;
+        }
+        postings.put(1_000_000, new int[][]{manyPageIds, manyRanks});
+        PostingsSegment segment = write(postings);
+
+        postings.forEach((lemmaId, expected) -> {
+            PostingsSegment.Postings found = segment.find(lemmaId);
+            assertNotNull(found, "lemma_id=" + lemmaId);
+            assertArrayEquals(expected[0], found.pageIds(), "lemma_id=" + lemmaId);
+            assertArrayEquals(expected[1], found.ranks(), "lemma_id=" + lemmaId);
+        });
+        assertEquals(1, segment.getSiteId());
+        assertEquals(2, segment.getGeneration());
+    }
+
+    @Test
+    void returnsNullForMissingLemmas() throws IOException {
+        Map<Integer, int[][]> postings = new TreeMap<>();
+        postings.put(10, new int[][]{{1, 2}, {1, 1}});
+        postings.put(20, new int[][]{{3}, {2}});
+        PostingsSegment segment = write(postings);
+
+        assertNull(segment.find(5));  // меньше всех lemma_id
+        assertNull(segment.find(15));  // между соседними
+        assertNull(segment.find(25));  // больше всех
+        assertNull(write(Map.of()).find(10));  // в сегменте нет лемм
+    }
+
+    @Test
+    void rejectsUnsortedPostings() throws IOException {
+        try (PostingsSegmentWriter writer = new PostingsSegmentWriter(directory.resolve("unsorted.seg"))) {
+            writer.add(5, 10, 1);
+            assertThrows(IllegalStateException.class, () -> writer.add(5, 10, 1));
+            assertThrows(IllegalStateException.class, () -> writer.add(4, 11, 1));
+        }
+    }
+
+    @Test
+    void rejectsCorruptFooter() throws IOException {
+        Map<Integer, int[][]> postings = Map.of(1, new int[][]{{1, 2, 3}, {1, 2, 3}});
+        Path file = write(postings).getFile();
+        long size = Files.size(file);
+
+        Path badMagic = copy(file, "bad-magic.seg");
+        overwrite(badMagic, size - 4, ByteBuffer.allocate(4).putInt(0x12345678));
+        assertThrows(IOException.class, () -> PostingsSegment.open(badMagic, 1, 2));
+
+        Path badDirectoryOffset = copy(file, "bad-directory.seg");
+        overwrite(badDirectoryOffset, size - PostingsSegmentWriter.FOOTER_SIZE, ByteBuffer.allocate(8).putLong(1));
+        assertThrows(IOException.class, () -> PostingsSegment.open(badDirectoryOffset, 1, 2));
+
+        Path badLemmaCount = copy(file, "bad-count.seg");
+        overwrite(badLemmaCount, size - 8, ByteBuffer.allocate(4).putInt(-1));
+        assertThrows(IOException.class, () -> PostingsSegment.open(badLemmaCount, 1, 2));
+
+        Path truncated = directory.resolve("truncated.seg");
+        Files.write(truncated, new byte[PostingsSegmentWriter.FOOTER_SIZE - 1]);
+        assertThrows(IOException.class, () -> PostingsSegment.open(truncated, 1, 2));
+    }
+
+    private PostingsSegment write(Map<Integer, int[][]> postings) throws IOException {
+        Path file = Files.createTempFile(directory, "site-1-gen-2", ".seg");
+        try (PostingsSegmentWriter writer = new PostingsSegmentWriter(file)) {
+            for (Map.Entry<Integer, int[][]> lemmaPostings : postings.entrySet()) {
+                int[] pageIds = lemmaPostings.getValue()[0];
+                int[] ranks = lemmaPostings.getValue()[1];
+                for (int i = 0; i < pageIds.length; i++) writer.add(lemmaPostings.getKey(), pageIds[i], ranks[i]);
+            }
+        }
+        return PostingsSegment.open(file, 1, 2);
+    }
+
+    private Path copy(Path file, String name) throws IOException {
+        return Files.copy(file, directory.resolve(name));
+    }
+
+    private static void overwrite(Path file, long position, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(bytes.flip(), position);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package searchengine.services.searching.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.jpa.repository.Query;
+import searchengine.config.ConfigSearchIndex;
+import searchengine.dto.searching.PageRelevance;
+import searchengine.model.Lemma;
+import searchengine.model.Site;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.SiteRepository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Поиск по сегментам должен возвращать те же страницы и ту же релевантность, что и поиск через MySQL:
+ * пересечение страниц лемм запроса, затем запрос
+ * {@link IndexRepository#getPageIdAndRelevanceByLemmaIdSetAndPageIdSet} по этим страницам.
+ * <p>
+ * По умолчанию результат сравнивается с вычислением по тем же правилам в памяти. С пустой базой MySQL
+ * (той же, что для IndexLayoutBenchmarkTest) сравнение идет с самим SQL запросом IndexRepository:
+ * mvn test -Dtest=SearchIndexEngineTest -Dindex.benchmark.url=jdbc:mysql://localhost:3306/search_engine_bench</p>
+ */
+class SearchIndexEngineTest {
+
+    private static final String[] WORDS = {"поиск", "индекс", "страница", "сайт", "лемма", "запрос", "редкий"};
+    private static final int GENERATION = 3;
+    private static final String CHECK_TABLE = "search_index_check";
+
+    @TempDir
+    Path directory;
+
+    private final List<Lemma> lemmas = new ArrayList<>();  // леммы обоих сайтов
+    private final Map<Integer, TreeMap<Integer, Integer>> postings = new TreeMap<>();  // lemma_id - страница - rank
+    private SearchIndexEngine searchIndexEngine;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        generateCorpus();
+        for (int siteId : new int[]{1, 2}) writeSegment(siteId);
+        ConfigSearchIndex configSearchIndex = new ConfigSearchIndex();
+        configSearchIndex.setEnabled(true);
+        configSearchIndex.setDirectory(directory.toString());
+        SiteRepository siteRepository = mock(SiteRepository.class);
+        when(siteRepository.findAll()).thenReturn(List.of(site(1), site(2)));
+        searchIndexEngine = new SearchIndexEngine(configSearchIndex, null, siteRepository);
+        searchIndexEngine.loadSegments();
+    }
+
+    @Test
+    void rankingMatchesRelevanceQuery() throws SQLException {
+        for (List<String> query : queries()) {
+            List<Lemma> queryLemmas = findLemmas(query);
+            List<PageRelevance> expected = sqlRelevance(queryLemmas, this::findPageIdsInMemory,
+                    this::relevanceInMemory);
+            assertSameRanking(expected, search(queryLemmas, 0, Integer.MAX_VALUE), query.toString());
+        }
+    }
+
+    @Test
+    void appliesOffsetAndLimit() {
+        List<Lemma> queryLemmas = findLemmas(List.of("поиск", "страница"));
+        List<PageRelevance> all = search(queryLemmas, 0, Integer.MAX_VALUE);
+        assertTrue(all.size() > 10);
+        assertEquals(relevances(all.subList(5, 10)), relevances(search(queryLemmas, 5, 5)));
+        assertEquals(List.of(), search(queryLemmas, all.size(), 5));
+    }
+
+    @Test
+    void fallsBackToMySqlWithoutCurrentSegment() {
+        Lemma otherGeneration = findLemmas(List.of("поиск")).get(0);
+        otherGeneration.setGeneration(GENERATION + 1);
+        assertTrue(searchIndexEngine.search(List.of(otherGeneration), 0, 10).isEmpty());
+        searchIndexEngine.invalidate(1);
+        assertTrue(searchIndexEngine.search(findLemmas(List.of("поиск")), 0, 10).isEmpty());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "index.benchmark.url", matches = ".+")
+    void rankingMatchesRelevanceQueryInMySql() throws Exception {
+        try (Connection connection = DriverManager.getConnection(System.getProperty("index.benchmark.url"),
+                System.getProperty("index.benchmark.user", "root"),
+                System.getProperty("index.benchmark.password", "root"))) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS " + CHECK_TABLE);
+                statement.execute("CREATE TABLE " + CHECK_TABLE + " (page_id INT NOT NULL, lemma_id INT NOT NULL, " +
+                        "`rank` SMALLINT UNSIGNED NOT NULL, PRIMARY KEY (lemma_id, page_id))");
+            }
+            try {
+                try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + CHECK_TABLE +
+                        " (lemma_id, page_id, `rank`) VALUES (?, ?, ?)")) {
+                    for (Map.Entry<Integer, TreeMap<Integer, Integer>> lemmaPostings : postings.entrySet()) {
+                        for (Map.Entry<Integer, Integer> posting : lemmaPostings.getValue().entrySet()) {
+                            insert.setInt(1, lemmaPostings.getKey());
+                            insert.setInt(2, posting.getKey());
+                            insert.setInt(3, posting.getValue());
+                            insert.addBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+                String relevanceSql = IndexRepository.class.getMethod("getPageIdAndRelevanceByLemmaIdSetAndPageIdSet",
+                        Set.class, Set.class, int.class, int.class).getAnnotation(Query.class).value();
+                for (List<String> query : queries()) {
+                    List<Lemma> queryLemmas = findLemmas(query);
+                    List<PageRelevance> expected = sqlRelevance(queryLemmas,
+                            lemmaIds -> findPageIdsInMySql(connection, lemmaIds),
+                            (lemmaIds, pageIds) -> relevanceInMySql(connection, relevanceSql, lemmaIds, pageIds));
+                    assertSameRanking(expected, search(queryLemmas, 0, Integer.MAX_VALUE), query.toString());
+                }
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("DROP TABLE " + CHECK_TABLE);
+                }
+            }
+        }
+    }
+
+    /* Запросы из одной и нескольких лемм, в том числе с леммой, которой нет на одном из сайтов */
+    private static List<List<String>> queries() {
+        return List.of(List.of("поиск"), List.of("редкий"), List.of("поиск", "страница"),
+                List.of("индекс", "сайт", "лемма"), List.of("редкий", "запрос"), List.of(WORDS));
+    }
+
+    /*
+     * Каждое слово встречается на странице с вероятностью, зависящей от слова, rank от 1 до 5,
+     * изредка больше 127 (несколько байт varint). Слово "редкий" есть только на первом сайте.
+     */
+    private void generateCorpus() {
+        Random random = new Random(25);
+        for (int siteId : new int[]{1, 2}) {
+            for (int word = 0; word < WORDS.length; word++) {
+                if (siteId == 2 && word == WORDS.length - 1) continue;
+                Lemma lemma = new Lemma();
+                lemma.setId(siteId * 100 + word);
+                lemma.setSiteId(siteId);
+                lemma.setGeneration(GENERATION);
+                lemma.setLemma(WORDS[word]);
+                TreeMap<Integer, Integer> lemmaPostings = new TreeMap<>();
+                double probability = 0.9 - word * 0.12;
+                for (int pageId = siteId * 1_000; pageId < siteId * 1_000 + 400; pageId++) {
+                    if (random.nextDouble() >= probability) continue;
+                    lemmaPostings.put(pageId, random.nextInt(50) == 0 ? 200 + random.nextInt(300) : 1 + random.nextInt(5));
+                }
+                lemma.setFrequency(lemmaPostings.size());
+                lemmas.add(lemma);
+                postings.put(lemma.getId(), lemmaPostings);
+            }
+        }
+    }
+
+    private void writeSegment(int siteId) throws IOException {
+        Path file = directory.resolve("site-" + siteId + "-gen-" + GENERATION + ".seg");
+        try (PostingsSegmentWriter writer = new PostingsSegmentWriter(file)) {
+            for (Map.Entry<Integer, TreeMap<Integer, Integer>> lemmaPostings : postings.entrySet()) {
+                if (lemmaPostings.getKey() / 100 != siteId) continue;
+                for (Map.Entry<Integer, Integer> posting : lemmaPostings.getValue().entrySet()) {
+                    writer.add(lemmaPostings.getKey(), posting.getKey(), posting.getValue());
+                }
+            }
+        }
+    }
+
+    private static Site site(int id) {
+        Site site = new Site();
+        site.setId(id);
+        site.setGeneration(GENERATION);
+        return site;
+    }
+
+    /* Леммы запроса на всех сайтах - то, что поиск получает из таблицы lemma */
+    private List<Lemma> findLemmas(List<String> words) {
+        return lemmas.stream()
+                .filter(lemma -> words.contains(lemma.getLemma()))
+                .toList();
+    }
+
+    private List<PageRelevance> search(List<Lemma> queryLemmas, int offset, int limit) {
+        return searchIndexEngine.search(queryLemmas, offset, limit).orElseThrow();
+    }
+
+    /* Поиск через MySQL, как в SearchingServiceImpl: пересечение страниц по каждому слову, затем релевантность */
+    private static List<PageRelevance> sqlRelevance(List<Lemma> queryLemmas,
+                                                    SqlFunction<Set<Integer>, Set<Integer>> findPageIds,
+                                                    RelevanceQuery relevanceQuery) throws SQLException {
+        Map<String, Set<Integer>> lemmaIdsByWord = queryLemmas.stream().collect(Collectors.groupingBy(
+                Lemma::getLemma, Collectors.mapping(Lemma::getId, Collectors.toSet())));
+        Set<Integer> pageIds = null;
+        for (Set<Integer> wordLemmaIds : lemmaIdsByWord.values()) {
+            Set<Integer> wordPageIds = new HashSet<>(findPageIds.apply(wordLemmaIds));
+            if (pageIds == null) pageIds = wordPageIds;
+            else pageIds.retainAll(wordPageIds);
+        }
+        Set<Integer> lemmaIds = queryLemmas.stream().map(Lemma::getId).collect(Collectors.toSet());
+        return pageIds == null || pageIds.isEmpty() ? List.of() : relevanceQuery.apply(lemmaIds, pageIds);
+    }
+
+    private Set<Integer> findPageIdsInMemory(Set<Integer> lemmaIds) {
+        return lemmaIds.stream()
+                .flatMap(lemmaId -> postings.get(lemmaId).keySet().stream())
+                .collect(Collectors.toSet());
+    }
+
+    /* WITH pages_ranks_sum: сумма rank по страницам, относительная релевантность - доля от максимума */
+    private List<PageRelevance> relevanceInMemory(Set<Integer> lemmaIds, Set<Integer> pageIds) {
+        Map<Integer, Integer> rankSums = new HashMap<>();
+        for (int lemmaId : lemmaIds) {
+            postings.get(lemmaId).forEach((pageId, rank) -> {
+                if (pageIds.contains(pageId)) rankSums.merge(pageId, rank, Integer::sum);
+            });
+        }
+        double maxRankSum = Collections.max(rankSums.values());
+        return rankSums.entrySet().stream()
+                .map(rankSum -> relevance(rankSum.getKey(), rankSum.getValue(), rankSum.getValue() / maxRankSum))
+                .sorted(Comparator.comparing(PageRelevance::getRelativeRelevance).reversed())
+                .toList();
+    }
+
+    private static Set<Integer> findPageIdsInMySql(Connection connection, Set<Integer> lemmaIds) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT DISTINCT page_id FROM " + CHECK_TABLE +
+                " WHERE lemma_id IN (" + placeholders(lemmaIds.size()) + ")")) {
+            int index = 1;
+            for (int lemmaId : lemmaIds) statement.setInt(index++, lemmaId);
+            Set<Integer> pageIds = new HashSet<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) pageIds.add(resultSet.getInt(1));
+            }
+            return pageIds;
+        }
+    }
+
+    /* Текст запроса берется из @Query, именованные параметры раскрываются как в Hibernate */
+    private static List<PageRelevance> relevanceInMySql(Connection connection, String relevanceSql,
+                                                        Set<Integer> lemmaIds, Set<Integer> pageIds)
+            throws SQLException {
+        String sql = relevanceSql.replace("`index`", CHECK_TABLE)
+                .replace(":lemmaIdSet", placeholders(lemmaIds.size()))
+                .replace(":pageIdSet", placeholders(pageIds.size()))
+                .replace(":limit", "?")
+                .replace(":offset", "?");
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (int lemmaId : lemmaIds) statement.setInt(index++, lemmaId);
+            for (int pageId : pageIds) statement.setInt(index++, pageId);
+            statement.setInt(index++, Integer.MAX_VALUE);
+            statement.setInt(index, 0);
+            List<PageRelevance> result = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    result.add(relevance(resultSet.getInt("page_id"), resultSet.getDouble("absolute_relevance"),
+                            resultSet.getDouble("relative_relevance")));
+                }
+            }
+            return result;
+        }
+    }
+
+    /*
+     * Страницы с равной релевантностью могут идти в любом порядке, поэтому сравниваются релевантность
+     * каждой страницы и последовательность значений. MySQL округляет деление до 4 знаков (div_precision_increment)
+     */
+    private static void assertSameRanking(List<PageRelevance> expected, List<PageRelevance> actual, String query) {
+        assertEquals(expected.size(), actual.size(), query);
+        Map<Integer, PageRelevance> actualByPage = actual.stream()
+                .collect(Collectors.toMap(PageRelevance::getPageId, Function.identity()));
+        for (int i = 0; i < expected.size(); i++) {
+            PageRelevance page = actualByPage.get(expected.get(i).getPageId());
+            assertNotNull(page, query + ": страница " + expected.get(i).getPageId());
+            assertEquals(expected.get(i).getAbsoluteRelevance(), page.getAbsoluteRelevance(), 1e-9, query);
+            assertEquals(expected.get(i).getRelativeRelevance(), page.getRelativeRelevance(), 1e-4, query);
+            assertEquals(expected.get(i).getRelativeRelevance(), actual.get(i).getRelativeRelevance(), 1e-4, query);
+        }
+    }
+
+    private static List<Double> relevances(List<PageRelevance> pages) {
+        return pages.stream().map(PageRelevance::getRelativeRelevance).toList();
+    }
+
+    private static PageRelevance relevance(int pageId, double absoluteRelevance, double relativeRelevance) {
+        PageRelevance relevance = new PageRelevance();
+        relevance.setPageId(pageId);
+        relevance.setAbsoluteRelevance(absoluteRelevance);
+        relevance.setRelativeRelevance(relativeRelevance);
+        return relevance;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private interface SqlFunction<T, R> {
+        R apply(T argument) throws SQLException;
+    }
+
+    private interface RelevanceQuery {
+        List<PageRelevance> apply(Set<Integer> lemmaIds, Set<Integer> pageIds) throws SQLException;
+    }
+}